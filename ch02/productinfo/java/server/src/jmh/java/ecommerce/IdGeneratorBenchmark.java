@@ -0,0 +1,55 @@
+package ecommerce;
+
+import ecommerce.catalog.IdGenerator;
+import ecommerce.catalog.IdGenerators;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of generating a product ID and its string form, as addProduct does, with one thread and with 16 threads
+ * sharing the generator: {@code RANDOM} is {@link UUID#randomUUID()}, {@code TIME_ORDERED} the version 7 UUIDs of
+ * {@link ecommerce.catalog.TimeOrderedIdGenerator}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmark {
+
+    @Param({"RANDOM", "TIME_ORDERED"})
+    public IdGenerators.Type generator;
+
+    private IdGenerator idGenerator;
+
+    @Setup
+    public void setUp() {
+        idGenerator = IdGenerators.of(generator);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String oneThread() {
+        return idGenerator.nextId().toString();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String sixteenThreads() {
+        return idGenerator.nextId().toString();
+    }
+}
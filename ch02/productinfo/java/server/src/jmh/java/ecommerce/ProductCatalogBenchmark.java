@@ -0,0 +1,131 @@
+package ecommerce;
+
+import ecommerce.catalog.ProductCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Heap footprint and lookup time of the product store at 10M products:
+ * <ul>
+ *     <li>{@code hashMap} - the previous store, products with their ID keyed by the ID string.</li>
+ *     <li>{@code concurrentHashMap} - the same in a ConcurrentHashMap.</li>
+ *     <li>{@code productCatalog} - {@link ProductCatalog}, products with their ID keyed by the two halves of the
+ *     UUID.</li>
+ * </ul>
+ * The retained heap per product is printed when the store has been filled. The products share a few names and
+ * descriptions, so it is mostly the cost of the IDs and the store.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class ProductCatalogBenchmark {
+
+    private static final int LOOKUP_IDS = 1 << 16;
+    private static final String[] NAMES = {"Samsung S10", "Apple iPhone 11", "Google Pixel 4", "Huawei P30"};
+
+    @Param({"hashMap", "concurrentHashMap", "productCatalog"})
+    public String store;
+
+    @Param({"10000000"})
+    public int products;
+
+    private Function<String, ProductInfoOuterClass.Product> lookup;
+    private char[][] lookupIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long before = usedHeapAfterGc();
+        switch (store) {
+            case "hashMap":
+                lookup = fill(new HashMap<>())::get;
+                break;
+            case "concurrentHashMap":
+                lookup = fill(new ConcurrentHashMap<>())::get;
+                break;
+            case "productCatalog":
+                ProductCatalog<ProductInfoOuterClass.Product> catalog = new ProductCatalog<>();
+                for (int i = 0; i < products; i++) {
+                    UUID id = id(i);
+                    catalog.put(id.getMostSignificantBits(), id.getLeastSignificantBits(),
+                            product(i).setId(id.toString()).build());
+                }
+                lookup = catalog::get;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown store " + store);
+        }
+        long heapBytesPerProduct = (usedHeapAfterGc() - before) / products;
+        System.out.println(store + " retains " + heapBytesPerProduct + " bytes of heap per product");
+
+        lookupIds = new char[LOOKUP_IDS][];
+        for (int i = 0; i < LOOKUP_IDS; i++) {
+            lookupIds[i] = id(ThreadLocalRandom.current().nextInt(products)).toString().toCharArray();
+        }
+    }
+
+    private Map<String, ProductInfoOuterClass.Product> fill(Map<String, ProductInfoOuterClass.Product> map) {
+        for (int i = 0; i < products; i++) {
+            String id = id(i).toString();
+            map.put(id, product(i).setId(id).build());
+        }
+        return map;
+    }
+
+    @Benchmark
+    public ProductInfoOuterClass.Product getProduct() {
+        // Like a parsed request, a new string whose hash code has not been computed yet.
+        return lookup.apply(new String(lookupIds[ThreadLocalRandom.current().nextInt(LOOKUP_IDS)]));
+    }
+
+    private static ProductInfoOuterClass.Product.Builder product(int i) {
+        String name = NAMES[i % NAMES.length];
+        return ProductInfoOuterClass.Product.newBuilder()
+                .setName(name)
+                .setDescription(name)
+                .setPrice(700.0f);
+    }
+
+    /**
+     * Random-looking version 4 UUIDs that can be derived again from their index.
+     */
+    private static UUID id(int i) {
+        long mostSigBits = mix(i) & ~0xf000L | 0x4000L;
+        long leastSigBits = mix(~i) & 0x3fffffffffffffffL | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
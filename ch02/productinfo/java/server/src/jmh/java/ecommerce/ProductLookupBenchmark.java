@@ -0,0 +1,80 @@
+package ecommerce;
+
+import ecommerce.catalog.SingleFlight;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 64 threads looking up the same product in a {@link SlowProductStore} of {@code latencyMicros}, each on its own or
+ * through a {@link SingleFlight} as getProduct does. After every iteration the number of lookups that reached the
+ * store per thousand calls is printed; the throughput of the calls barely changes, the load on the store does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductLookupBenchmark {
+
+    @Param({"false", "true"})
+    public boolean singleFlight;
+
+    @Param({"1000"})
+    public long latencyMicros;
+
+    private SlowProductStore store;
+    private SingleFlight<String, ProductInfoOuterClass.Product> lookups;
+    private String id;
+    private long storeLookups;
+    private long lookupCalls;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new SlowProductStore(new CatalogProductStore(), latencyMicros);
+        lookups = new SingleFlight<>();
+        UUID uuid = UUID.randomUUID();
+        store.put(uuid, ProductInfoOuterClass.Product.newBuilder()
+                .setName("Samsung S10")
+                .setDescription("Samsung Galaxy S10 is the latest smart phone")
+                .setPrice(700)
+                .build());
+        id = uuid.toString();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        storeLookups = store.getLookupCount();
+        lookupCalls = lookups.getLoadCount() + lookups.getDeduplicatedCount();
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        if (singleFlight) {
+            long calls = lookups.getLoadCount() + lookups.getDeduplicatedCount() - lookupCalls;
+            System.out.printf("  %.1f store lookups per 1000 calls, %s%n",
+                    1000.0 * (store.getLookupCount() - storeLookups) / calls, lookups);
+        }
+    }
+
+    @Benchmark
+    @Threads(64)
+    public ProductInfoOuterClass.Product getProduct() {
+        return (singleFlight ? lookups.load(id, store::get) : store.get(id)).join();
+    }
+}
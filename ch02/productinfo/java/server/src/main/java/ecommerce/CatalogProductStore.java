@@ -0,0 +1,27 @@
+package ecommerce;
+
+import ecommerce.catalog.ProductCatalog;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Default {@link ProductStore}, which keeps the products in memory in a {@link ProductCatalog}.
+ */
+public class CatalogProductStore implements ProductStore {
+
+    // Products keep their canonical ID, so a read returns the stored product as it is instead of copying it to set the
+    // ID, and the ID matches the one addProduct returned whatever the case of the requested ID.
+    private final ProductCatalog<ProductInfoOuterClass.Product> productCatalog = new ProductCatalog<>();
+
+    @Override
+    public void put(UUID id, ProductInfoOuterClass.Product product) {
+        productCatalog.put(id.getMostSignificantBits(), id.getLeastSignificantBits(),
+                product.toBuilder().setId(id.toString()).build());
+    }
+
+    @Override
+    public CompletableFuture<ProductInfoOuterClass.Product> get(String id) {
+        return CompletableFuture.completedFuture(productCatalog.get(id));
+    }
+}
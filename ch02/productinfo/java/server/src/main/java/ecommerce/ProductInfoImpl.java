@@ -1,25 +1,75 @@
 package ecommerce;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+import ecommerce.bootstrap.SerializedResponses;
+import ecommerce.catalog.IdGenerator;
+import ecommerce.catalog.IdGenerators;
+import ecommerce.catalog.ProductCatalog;
+import ecommerce.catalog.SingleFlight;
+import io.grpc.ServerServiceDefinition;
 import io.grpc.Status;
 import io.grpc.StatusException;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
 import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ProductInfoImpl extends ProductInfoGrpc.ProductInfoImplBase {
 
-    private Map productMap = new HashMap<String, ProductInfoOuterClass.Product>();
+    private static final Logger logger = Logger.getLogger(ProductInfoImpl.class.getName());
+
+    public static final String SERIALIZED_RESPONSES_PROPERTY = "productinfo.serializedResponses";
+    public static final String STORE_LATENCY_PROPERTY = "productinfo.store.latencyMicros";
+
+    private final ProductStore productStore;
+    // Concurrent lookups of the same product share one lookup of the store.
+    private final SingleFlight<String, ProductInfoOuterClass.Product> productLookups = new SingleFlight<>();
+    // With serialized responses, products are stored encoded, ID included, in memory and sent as they are.
+    private final ProductCatalog<byte[]> serializedCatalog = new ProductCatalog<>();
+    private final IdGenerator idGenerator;
+    private final boolean serializedResponses;
+
+    public ProductInfoImpl() {
+        this(IdGenerators.configured(), configuredStore(), Boolean.getBoolean(SERIALIZED_RESPONSES_PROPERTY));
+    }
+
+    public ProductInfoImpl(IdGenerator idGenerator) {
+        this(idGenerator, false);
+    }
+
+    public ProductInfoImpl(IdGenerator idGenerator, boolean serializedResponses) {
+        this(idGenerator, new CatalogProductStore(), serializedResponses);
+    }
+
+    public ProductInfoImpl(IdGenerator idGenerator, ProductStore productStore, boolean serializedResponses) {
+        this.idGenerator = idGenerator;
+        this.productStore = productStore;
+        this.serializedResponses = serializedResponses;
+    }
+
+    /**
+     * Products are kept in memory, behind a stand-in for a remote store with {@code -Dproductinfo.store.latencyMicros}.
+     */
+    private static ProductStore configuredStore() {
+        long latencyMicros = Long.getLong(STORE_LATENCY_PROPERTY, -1);
+        return latencyMicros < 0 ? new CatalogProductStore()
+                : new SlowProductStore(new CatalogProductStore(), latencyMicros);
+    }
 
     @Override
     public void addProduct(ProductInfoOuterClass.Product request,
                            io.grpc.stub.StreamObserver<ProductInfoOuterClass.ProductID> responseObserver) {
-        UUID uuid = UUID.randomUUID();
-        String randomUUIDString = uuid.toString();
-        request = request.toBuilder().setId(randomUUIDString).build();
-        productMap.put(randomUUIDString, request);
+        UUID uuid = idGenerator.nextId();
+        String uuidString = uuid.toString();
+        if (serializedResponses) {
+            serializedCatalog.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                    request.toBuilder().setId(uuidString).build().toByteArray());
+        } else {
+            productStore.put(uuid, request);
+        }
         ProductInfoOuterClass.ProductID id
-                = ProductInfoOuterClass.ProductID.newBuilder().setValue(randomUUIDString).build();
+                = ProductInfoOuterClass.ProductID.newBuilder().setValue(uuidString).build();
         responseObserver.onNext(id);
         responseObserver.onCompleted();
     }
@@ -28,11 +78,71 @@ public class ProductInfoImpl extends ProductInfoGrpc.ProductInfoImplBase {
     public void getProduct(ProductInfoOuterClass.ProductID request,
                            io.grpc.stub.StreamObserver<ProductInfoOuterClass.Product> responseObserver) {
         String id = request.getValue();
-        if (productMap.containsKey(id)) {
-            responseObserver.onNext((ProductInfoOuterClass.Product) productMap.get(id));
+        if (serializedResponses) {
+            byte[] serialized = serializedCatalog.get(id);
+            ProductInfoOuterClass.Product product = null;
+            if (serialized != null) {
+                try {
+                    product = ProductInfoOuterClass.Product.parseFrom(serialized);
+                } catch (InvalidProtocolBufferException e) {
+                    responseObserver.onError(new StatusException(Status.INTERNAL.withCause(e)));
+                    return;
+                }
+            }
+            reply(product, responseObserver);
+            return;
+        }
+        // Every call waiting for the same lookup is answered on its own observer once the lookup completes.
+        productLookups.load(id, productStore::get).whenComplete((product, failure) -> {
+            if (failure != null) {
+                logger.log(Level.WARNING, "Looking up product " + id + " failed", failure);
+                responseObserver.onError(new StatusException(Status.UNAVAILABLE.withCause(failure)));
+            } else {
+                reply(product, responseObserver);
+            }
+        });
+    }
+
+    private static void reply(ProductInfoOuterClass.Product product,
+                              io.grpc.stub.StreamObserver<ProductInfoOuterClass.Product> responseObserver) {
+        if (product != null) {
+            responseObserver.onNext(product);
+            responseObserver.onCompleted();
+        } else {
+            responseObserver.onError(new StatusException(Status.NOT_FOUND));
+        }
+    }
+
+    /**
+     * The lookups of products in the store, with the number of lookups that were shared between concurrent calls.
+     */
+    public SingleFlight<String, ProductInfoOuterClass.Product> getProductLookups() {
+        return productLookups;
+    }
+
+    /**
+     * Sends the stored bytes of a product, for the serialized responses mode.
+     */
+    private void getSerializedProduct(ProductInfoOuterClass.ProductID request,
+                                      io.grpc.stub.StreamObserver<ByteBuffer> responseObserver) {
+        byte[] serialized = serializedCatalog.get(request.getValue());
+        if (serialized != null) {
+            responseObserver.onNext(ByteBuffer.wrap(serialized));
             responseObserver.onCompleted();
         } else {
             responseObserver.onError(new StatusException(Status.NOT_FOUND));
         }
     }
+
+    /**
+     * The service bound like {@link #bindService()}, except that with serialized responses getProduct sends the
+     * stored bytes of the product, so reading a product costs no serialization however often it is read.
+     */
+    public ServerServiceDefinition serviceDefinition() {
+        if (!serializedResponses) {
+            return bindService();
+        }
+        return SerializedResponses.bindUnary(bindService(), ProductInfoGrpc.getGetProductMethod(),
+                this::getSerializedProduct);
+    }
 }
@@ -1,5 +1,6 @@
 package ecommerce;
 
+import ecommerce.bootstrap.ServerExecutors;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 
@@ -11,12 +12,14 @@ public class ProductInfoServer {
     private static final Logger logger = Logger.getLogger(ProductInfoServer.class.getName());
 
     private Server server;
+    private ProductInfoImpl productInfo;
 
     private void start() throws IOException {
         /* The port on which the server should run */
         int port = 50051;
-        server = ServerBuilder.forPort(port)
-                .addService(new ProductInfoImpl())
+        productInfo = new ProductInfoImpl();
+        server = ServerExecutors.configure(ServerBuilder.forPort(port))
+                .addService(productInfo.serviceDefinition())
                 .build()
                 .start();
         logger.info("Server started, listening on " + port);
@@ -31,6 +34,7 @@ public class ProductInfoServer {
     private void stop() {
         if (server != null) {
             server.shutdown();
+            logger.info("Product lookups - " + productInfo.getProductLookups());
         }
     }
 
@@ -0,0 +1,21 @@
+package ecommerce;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where {@link ProductInfoImpl} keeps its products. Lookups complete asynchronously, so stores that fetch products
+ * from elsewhere don't block the gRPC executor. Implementations must be safe to call from concurrent calls.
+ */
+public interface ProductStore {
+
+    /**
+     * Stores {@code product} under {@code id}, replacing the ID it has.
+     */
+    void put(UUID id, ProductInfoOuterClass.Product product);
+
+    /**
+     * Completes with the product with the given ID, ID included, or with {@code null} if there's no such product.
+     */
+    CompletableFuture<ProductInfoOuterClass.Product> get(String id);
+}
@@ -0,0 +1,66 @@
+package ecommerce;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for a remote {@link ProductStore}: every lookup completes after a fixed latency, as if it had made a
+ * round trip to a database. Products are stored right away.
+ *
+ * Lookups complete on a single scheduler thread, so their callbacks should be short.
+ */
+public class SlowProductStore implements ProductStore {
+
+    private final ProductStore products;
+    private final long latencyMicros;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "product-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder lookups = new LongAdder();
+
+    /**
+     * @param products      where the products are kept
+     * @param latencyMicros time each lookup takes to complete
+     */
+    public SlowProductStore(ProductStore products, long latencyMicros) {
+        if (latencyMicros < 0) {
+            throw new IllegalArgumentException("Negative latency: " + latencyMicros);
+        }
+        this.products = products;
+        this.latencyMicros = latencyMicros;
+    }
+
+    @Override
+    public void put(UUID id, ProductInfoOuterClass.Product product) {
+        products.put(id, product);
+    }
+
+    @Override
+    public CompletableFuture<ProductInfoOuterClass.Product> get(String id) {
+        lookups.increment();
+        CompletableFuture<ProductInfoOuterClass.Product> product = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+            products.get(id).whenComplete((found, failure) -> {
+                if (failure != null) {
+                    product.completeExceptionally(failure);
+                } else {
+                    product.complete(found);
+                }
+            });
+        }, latencyMicros, TimeUnit.MICROSECONDS);
+        return product;
+    }
+
+    /**
+     * Number of lookups that reached the store.
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+}
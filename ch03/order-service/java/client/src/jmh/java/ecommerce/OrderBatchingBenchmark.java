@@ -0,0 +1,184 @@
+package ecommerce;
+
+import com.google.protobuf.StringValue;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of 32 threads each making one {@code addOrder} or {@code getOrder} call at a time over loopback Netty,
+ * as individual unary calls or through an {@link OrderBatcher} that sends them as {@code addOrders} and
+ * {@code getOrders} calls. The server is an in-memory stand-in for the order service, so the difference is the cost
+ * of the round trips.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderBatchingBenchmark {
+
+    private static final int ORDERS = 1024;
+
+    @Param({"unary", "batched"})
+    public String calls;
+
+    @Param({"64"})
+    public int maxBatchSize;
+
+    @Param({"200"})
+    public long maxDelayMicros;
+
+    private Server server;
+    private ManagedChannel channel;
+    private OrderManagementGrpc.OrderManagementStub stub;
+    private OrderBatcher batcher;
+    private OrderManagementOuterClass.Order[] orders;
+    private StringValue[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = ServerBuilder.forPort(0).addService(new InMemoryOrderService()).build().start();
+        channel = NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+        stub = OrderManagementGrpc.newStub(channel);
+        batcher = new OrderBatcher(stub, maxBatchSize, maxDelayMicros);
+        orders = new OrderManagementOuterClass.Order[ORDERS];
+        ids = new StringValue[ORDERS];
+        OrderManagementGrpc.OrderManagementBlockingStub blockingStub = OrderManagementGrpc.newBlockingStub(channel);
+        for (int i = 0; i < ORDERS; i++) {
+            orders[i] = OrderManagementOuterClass.Order.newBuilder()
+                    .setId(Integer.toString(i))
+                    .addItems("Apple Watch S4").addItems("iPad Pro")
+                    .setDestination("San Jose, CA")
+                    .setPrice(1800)
+                    .build();
+            ids[i] = StringValue.newBuilder().setValue(orders[i].getId()).build();
+            blockingStub.addOrder(orders[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        batcher.close();
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public StringValue addOrder() {
+        OrderManagementOuterClass.Order order = orders[ThreadLocalRandom.current().nextInt(ORDERS)];
+        ResponseFuture<StringValue> response = new ResponseFuture<>();
+        if ("batched".equals(calls)) {
+            batcher.addOrder(order, response);
+        } else {
+            stub.addOrder(order, response);
+        }
+        return response.join();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public OrderManagementOuterClass.Order getOrder() {
+        StringValue id = ids[ThreadLocalRandom.current().nextInt(ORDERS)];
+        ResponseFuture<OrderManagementOuterClass.Order> response = new ResponseFuture<>();
+        if ("batched".equals(calls)) {
+            batcher.getOrder(id, response);
+        } else {
+            stub.getOrder(id, response);
+        }
+        return response.join();
+    }
+
+    /**
+     * Completes with the response once the call completes.
+     */
+    private static class ResponseFuture<T> extends CompletableFuture<T> implements StreamObserver<T> {
+        private T last;
+
+        @Override
+        public void onNext(T value) {
+            last = value;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            complete(last);
+        }
+    }
+
+    /**
+     * The unary and batch methods of the order service, without logging or persistence.
+     */
+    private static class InMemoryOrderService extends OrderManagementGrpc.OrderManagementImplBase {
+        private final ConcurrentMap<String, OrderManagementOuterClass.Order> orders = new ConcurrentHashMap<>();
+
+        @Override
+        public void addOrder(OrderManagementOuterClass.Order request, StreamObserver<StringValue> responseObserver) {
+            orders.put(request.getId(), request);
+            responseObserver.onNext(StringValue.newBuilder().setValue(request.getId()).build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void getOrder(StringValue request, StreamObserver<OrderManagementOuterClass.Order> responseObserver) {
+            responseObserver.onNext(orders.get(request.getValue()));
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void addOrders(OrderManagementOuterClass.OrderBatch request,
+                              StreamObserver<OrderManagementOuterClass.OrderIdBatch> responseObserver) {
+            OrderManagementOuterClass.OrderIdBatch.Builder ids = OrderManagementOuterClass.OrderIdBatch.newBuilder();
+            for (OrderManagementOuterClass.Order order : request.getOrdersList()) {
+                orders.put(order.getId(), order);
+                ids.addIds(order.getId());
+            }
+            responseObserver.onNext(ids.build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void getOrders(OrderManagementOuterClass.OrderIdBatch request,
+                              StreamObserver<OrderManagementOuterClass.OrderBatch> responseObserver) {
+            OrderManagementOuterClass.OrderBatch.Builder batch = OrderManagementOuterClass.OrderBatch.newBuilder();
+            for (String id : request.getIdsList()) {
+                OrderManagementOuterClass.Order order = orders.get(id);
+                if (order != null) {
+                    batch.addOrders(order);
+                }
+            }
+            responseObserver.onNext(batch.build());
+            responseObserver.onCompleted();
+        }
+    }
+}
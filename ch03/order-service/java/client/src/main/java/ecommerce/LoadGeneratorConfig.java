@@ -0,0 +1,151 @@
+package ecommerce;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings for {@link OrderLoadGenerator}. Every setting can be overridden with an {@code order.loadgen.*} system
+ * property, e.g. {@code -Dorder.loadgen.mode=closed}.
+ */
+public class LoadGeneratorConfig {
+
+    public enum Mode {
+        /** Calls start at a constant arrival rate whether or not earlier calls have completed. */
+        OPEN,
+        /** Every concurrent call slot starts its next call as soon as the previous one completes. */
+        CLOSED
+    }
+
+    private final String host;
+    private final int port;
+    private final Mode mode;
+    private final int rate;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int channels;
+    private final int concurrency;
+    private final int streamMessages;
+    private final long expectedIntervalMicros;
+    private final Map<OrderRpc, Integer> mix;
+    private final int reportIntervalSeconds;
+    private final String histogramFile;
+
+    /**
+     * @param rate                   calls per second in open-loop mode, ignored in closed-loop mode
+     * @param concurrency            maximum number of outstanding calls per channel
+     * @param expectedIntervalMicros expected interval between calls of one slot in closed-loop mode, used to
+     *                               correct for coordinated omission. 0 disables the correction.
+     * @param mix                    relative weight of each RPC
+     * @param histogramFile          file the full latency distribution is written to, or {@code null}
+     */
+    public LoadGeneratorConfig(String host, int port, Mode mode, int rate, int warmupSeconds, int durationSeconds,
+                               int channels, int concurrency, int streamMessages, long expectedIntervalMicros,
+                               Map<OrderRpc, Integer> mix, int reportIntervalSeconds, String histogramFile) {
+        if (rate <= 0 || channels <= 0 || concurrency <= 0 || durationSeconds <= 0 || reportIntervalSeconds <= 0) {
+            throw new IllegalArgumentException(
+                    "rate, channels, concurrency, duration and report interval must be positive");
+        }
+        this.host = host;
+        this.port = port;
+        this.mode = mode;
+        this.rate = rate;
+        this.warmupSeconds = warmupSeconds;
+        this.durationSeconds = durationSeconds;
+        this.channels = channels;
+        this.concurrency = concurrency;
+        this.streamMessages = streamMessages;
+        this.expectedIntervalMicros = expectedIntervalMicros;
+        this.mix = mix;
+        this.reportIntervalSeconds = reportIntervalSeconds;
+        this.histogramFile = histogramFile;
+    }
+
+    public static LoadGeneratorConfig fromSystemProperties() {
+        return new LoadGeneratorConfig(
+                System.getProperty("order.loadgen.host", "localhost"),
+                Integer.getInteger("order.loadgen.port", 50051),
+                Mode.valueOf(System.getProperty("order.loadgen.mode", "open").toUpperCase()),
+                Integer.getInteger("order.loadgen.rate", 1000),
+                Integer.getInteger("order.loadgen.warmupSeconds", 5),
+                Integer.getInteger("order.loadgen.durationSeconds", 30),
+                Integer.getInteger("order.loadgen.channels", 1),
+                Integer.getInteger("order.loadgen.concurrency", 100),
+                Integer.getInteger("order.loadgen.streamMessages", 5),
+                Long.getLong("order.loadgen.expectedIntervalMicros", 0),
+                parseMix(System.getProperty("order.loadgen.mix",
+                        "addOrder:1,getOrder:1,searchOrders:1,updateOrders:1,processOrders:1")),
+                Integer.getInteger("order.loadgen.reportIntervalSeconds", 5),
+                System.getProperty("order.loadgen.histogramFile"));
+    }
+
+    /**
+     * Parses a mix such as {@code getOrder:8,addOrder:2}. RPCs that are not listed are not called.
+     */
+    static Map<OrderRpc, Integer> parseMix(String mix) {
+        Map<OrderRpc, Integer> weights = new EnumMap<>(OrderRpc.class);
+        for (String entry : mix.split(",")) {
+            String[] nameAndWeight = entry.trim().split(":");
+            int weight = nameAndWeight.length > 1 ? Integer.parseInt(nameAndWeight[1].trim()) : 1;
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in RPC mix : " + entry);
+            }
+            weights.put(OrderRpc.forMethodName(nameAndWeight[0].trim()), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("RPC mix has no calls : " + mix);
+        }
+        return weights;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getStreamMessages() {
+        return streamMessages;
+    }
+
+    public long getExpectedIntervalMicros() {
+        return expectedIntervalMicros;
+    }
+
+    public Map<OrderRpc, Integer> getMix() {
+        return mix;
+    }
+
+    public int getReportIntervalSeconds() {
+        return reportIntervalSeconds;
+    }
+
+    public String getHistogramFile() {
+        return histogramFile;
+    }
+}
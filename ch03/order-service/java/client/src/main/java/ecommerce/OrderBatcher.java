@@ -0,0 +1,236 @@
+package ecommerce;
+
+import com.google.protobuf.StringValue;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends individual {@code addOrder} and {@code getOrder} calls in batches. Calls made within {@code maxDelayMicros} of
+ * the first call of a batch, up to {@code maxBatchSize} of them, go out as one {@code addOrders} or {@code getOrders}
+ * call, and each call is completed on its own observer with its part of the response. Callers use it like the async
+ * stub and trade up to {@code maxDelayMicros} of latency for one round trip per batch instead of one per order.
+ *
+ * Batched {@code addOrder} calls get the ID of their order back. A batched {@code getOrder} call for an order the
+ * server doesn't have fails with {@code NOT_FOUND}. If the batch call fails, every call in it fails with its status.
+ * Calls made after {@link #close} fail right away with {@code UNAVAILABLE}.
+ */
+public class OrderBatcher implements AutoCloseable {
+
+    private final OrderManagementGrpc.OrderManagementStub stub;
+    private final int maxBatchSize;
+    private final long maxDelayMicros;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final PendingCalls<OrderManagementOuterClass.Order, StringValue> adds = new PendingCalls<>(this::sendAdds);
+    private final PendingCalls<StringValue, OrderManagementOuterClass.Order> gets = new PendingCalls<>(this::sendGets);
+    private volatile boolean closed;
+
+    /**
+     * @param maxBatchSize   number of calls after which a batch is sent right away
+     * @param maxDelayMicros how long the first call of a batch waits for more calls to join it
+     */
+    public OrderBatcher(OrderManagementGrpc.OrderManagementStub stub, int maxBatchSize, long maxDelayMicros) {
+        if (maxBatchSize < 1 || maxDelayMicros < 0) {
+            throw new IllegalArgumentException("Invalid batch size or delay");
+        }
+        this.stub = stub;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMicros = maxDelayMicros;
+    }
+
+    public void addOrder(OrderManagementOuterClass.Order request, StreamObserver<StringValue> responseObserver) {
+        adds.add(request, responseObserver);
+    }
+
+    public void getOrder(StringValue request, StreamObserver<OrderManagementOuterClass.Order> responseObserver) {
+        gets.add(request, responseObserver);
+    }
+
+    /**
+     * Sends the pending calls without waiting for their batches to fill up.
+     */
+    public void flush() {
+        adds.flush();
+        gets.flush();
+    }
+
+    /**
+     * Sends the pending calls and stops the timer. Calls made afterwards fail with {@code UNAVAILABLE}.
+     */
+    @Override
+    public void close() {
+        // Set before flushing, so a call either joins the last batches or sees that the batcher is closed.
+        closed = true;
+        flush();
+        scheduler.shutdownNow();
+    }
+
+    private void sendAdds(List<OrderManagementOuterClass.Order> orders, List<StreamObserver<StringValue>> observers) {
+        OrderManagementOuterClass.OrderBatch batch = OrderManagementOuterClass.OrderBatch.newBuilder()
+                .addAllOrders(orders)
+                .build();
+        stub.addOrders(batch, new BatchObserver<OrderManagementOuterClass.OrderIdBatch, StringValue>(observers) {
+            @Override
+            void complete(OrderManagementOuterClass.OrderIdBatch ids) {
+                if (ids.getIdsCount() != observers.size()) {
+                    fail(Status.INTERNAL.withDescription("Expected " + observers.size() + " order IDs, got "
+                            + ids.getIdsCount()).asRuntimeException());
+                    return;
+                }
+                for (int i = 0; i < observers.size(); i++) {
+                    StreamObserver<StringValue> observer = observers.get(i);
+                    observer.onNext(StringValue.newBuilder().setValue(ids.getIds(i)).build());
+                    observer.onCompleted();
+                }
+            }
+        });
+    }
+
+    private void sendGets(List<StringValue> ids, List<StreamObserver<OrderManagementOuterClass.Order>> observers) {
+        OrderManagementOuterClass.OrderIdBatch.Builder batch = OrderManagementOuterClass.OrderIdBatch.newBuilder();
+        for (StringValue id : ids) {
+            batch.addIds(id.getValue());
+        }
+        stub.getOrders(batch.build(),
+                new BatchObserver<OrderManagementOuterClass.OrderBatch, OrderManagementOuterClass.Order>(observers) {
+                    @Override
+                    void complete(OrderManagementOuterClass.OrderBatch orders) {
+                        Map<String, OrderManagementOuterClass.Order> byId = new HashMap<>();
+                        for (OrderManagementOuterClass.Order order : orders.getOrdersList()) {
+                            byId.put(order.getId(), order);
+                        }
+                        for (int i = 0; i < observers.size(); i++) {
+                            StreamObserver<OrderManagementOuterClass.Order> observer = observers.get(i);
+                            OrderManagementOuterClass.Order order = byId.get(ids.get(i).getValue());
+                            if (order == null) {
+                                observer.onError(Status.NOT_FOUND.withDescription("Order : "
+                                        + ids.get(i).getValue() + " - Not found.").asRuntimeException());
+                            } else {
+                                observer.onNext(order);
+                                observer.onCompleted();
+                            }
+                        }
+                    }
+                });
+    }
+
+    private interface BatchSender<ReqT, RespT> {
+        void send(List<ReqT> requests, List<StreamObserver<RespT>> observers);
+    }
+
+    /**
+     * The calls of one method waiting to be sent.
+     */
+    private final class PendingCalls<ReqT, RespT> {
+        private final BatchSender<ReqT, RespT> sender;
+        // Guarded by this.
+        private List<ReqT> requests = new ArrayList<>();
+        private List<StreamObserver<RespT>> observers = new ArrayList<>();
+        private ScheduledFuture<?> scheduledFlush;
+
+        PendingCalls(BatchSender<ReqT, RespT> sender) {
+            this.sender = sender;
+        }
+
+        void add(ReqT request, StreamObserver<RespT> observer) {
+            List<ReqT> fullRequests;
+            List<StreamObserver<RespT>> fullObservers;
+            synchronized (this) {
+                if (closed) {
+                    // Nothing would send a batch that doesn't fill up any more.
+                    fullRequests = null;
+                    fullObservers = null;
+                } else {
+                    requests.add(request);
+                    observers.add(observer);
+                    if (requests.size() < maxBatchSize) {
+                        if (requests.size() == 1) {
+                            // close() flushes before stopping the scheduler, and can't flush while this holds the lock.
+                            scheduledFlush = scheduler.schedule(this::flush, maxDelayMicros, TimeUnit.MICROSECONDS);
+                        }
+                        return;
+                    }
+                    fullRequests = requests;
+                    fullObservers = observers;
+                    reset();
+                }
+            }
+            if (fullRequests == null) {
+                observer.onError(Status.UNAVAILABLE.withDescription("Order batcher is closed").asRuntimeException());
+                return;
+            }
+            // Sent outside the lock, so other callers can start the next batch meanwhile.
+            sender.send(fullRequests, fullObservers);
+        }
+
+        void flush() {
+            List<ReqT> pendingRequests;
+            List<StreamObserver<RespT>> pendingObservers;
+            synchronized (this) {
+                if (requests.isEmpty()) {
+                    return;
+                }
+                pendingRequests = requests;
+                pendingObservers = observers;
+                reset();
+            }
+            sender.send(pendingRequests, pendingObservers);
+        }
+
+        private void reset() {
+            requests = new ArrayList<>(maxBatchSize);
+            observers = new ArrayList<>(maxBatchSize);
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+    }
+
+    /**
+     * Receives the response of a batch call and completes the calls in the batch.
+     */
+    private abstract static class BatchObserver<BatchT, RespT> implements StreamObserver<BatchT> {
+        private final List<StreamObserver<RespT>> observers;
+        private BatchT response;
+
+        BatchObserver(List<StreamObserver<RespT>> observers) {
+            this.observers = observers;
+        }
+
+        abstract void complete(BatchT response);
+
+        @Override
+        public void onNext(BatchT value) {
+            response = value;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            fail(Status.fromThrowable(t).asRuntimeException());
+        }
+
+        @Override
+        public void onCompleted() {
+            complete(response);
+        }
+
+        void fail(Throwable t) {
+            for (StreamObserver<RespT> observer : observers) {
+                observer.onError(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package ecommerce;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Load generator for the {@code OrderManagement} service, in the spirit of ghz. Configure it with
+ * {@code order.loadgen.*} system properties (see {@link LoadGeneratorConfig}) and point it at a running order
+ * server, e.g.
+ * <pre>
+ * java -Dorder.loadgen.rate=50000 -Dorder.loadgen.channels=4 -cp build/libs/client.jar ecommerce.OrderLoadGenerator
+ * </pre>
+ *
+ * In open-loop mode calls are scheduled at a constant arrival rate and latency is measured from the time a call
+ * was <em>scheduled</em> to start, not from the time it actually started. A call that has to wait because the
+ * server (or the per-channel concurrency limit) falls behind therefore shows the wait in its latency, which is what
+ * corrects the histogram for coordinated omission. In closed-loop mode each of {@code channels * concurrency} call
+ * slots starts its next call once the previous one completes; the histogram is corrected only when an expected
+ * interval is configured.
+ */
+public class OrderLoadGenerator {
+
+    private static final Logger logger = Logger.getLogger(OrderLoadGenerator.class.getName());
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final LoadGeneratorConfig config;
+    private final OrderRpc[] schedule;
+    private final List<ManagedChannel> channels = new ArrayList<>();
+    private final List<OrderManagementGrpc.OrderManagementStub> stubs = new ArrayList<>();
+    private final List<Semaphore> permits = new ArrayList<>();
+
+    private final Recorder latency = new Recorder(3);
+    private final Map<OrderRpc, Recorder> rpcLatency = new EnumMap<>(OrderRpc.class);
+    // Histogram counts include the samples added by coordinated omission correction, so calls are counted here.
+    private final Map<OrderRpc, LongAdder> rpcCalls = new EnumMap<>(OrderRpc.class);
+    private final Map<Status.Code, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final Histogram accumulatedLatency = new Histogram(3);
+    private final AtomicLong sequence = new AtomicLong();
+
+    private long measureStartNanos;
+    private long endNanos;
+    private long notStarted;
+    private long reportedCalls;
+
+    public OrderLoadGenerator(LoadGeneratorConfig config) {
+        this.config = config;
+        this.schedule = buildSchedule(config.getMix());
+        for (OrderRpc rpc : config.getMix().keySet()) {
+            rpcLatency.put(rpc, new Recorder(3));
+            rpcCalls.put(rpc, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGeneratorConfig config = LoadGeneratorConfig.fromSystemProperties();
+        new OrderLoadGenerator(config).run();
+    }
+
+    /**
+     * Spreads the weighted RPCs evenly so that every window of calls has roughly the configured mix.
+     */
+    private static OrderRpc[] buildSchedule(Map<OrderRpc, Integer> mix) {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        OrderRpc[] schedule = new OrderRpc[total];
+        Map<OrderRpc, Integer> issued = new EnumMap<>(OrderRpc.class);
+        for (int slot = 0; slot < total; slot++) {
+            OrderRpc next = null;
+            double mostBehind = Double.NEGATIVE_INFINITY;
+            for (Map.Entry<OrderRpc, Integer> entry : mix.entrySet()) {
+                double behind = (slot + 1) * (double) entry.getValue() / total
+                        - issued.getOrDefault(entry.getKey(), 0);
+                if (behind > mostBehind) {
+                    mostBehind = behind;
+                    next = entry.getKey();
+                }
+            }
+            schedule[slot] = next;
+            issued.merge(next, 1, Integer::sum);
+        }
+        return schedule;
+    }
+
+    public void run() throws InterruptedException, FileNotFoundException {
+        for (int i = 0; i < config.getChannels(); i++) {
+            // Completion callbacks only record a sample, so they run on the transport thread.
+            ManagedChannel channel = ManagedChannelBuilder.forAddress(config.getHost(), config.getPort())
+                    .usePlaintext()
+                    .directExecutor()
+                    .build();
+            channels.add(channel);
+            stubs.add(OrderManagementGrpc.newStub(channel));
+            permits.add(new Semaphore(config.getConcurrency()));
+        }
+
+        long startNanos = System.nanoTime();
+        measureStartNanos = startNanos + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        endNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+        logger.info("Starting " + describeLoad() + " against " + config.getHost() + ":" + config.getPort()
+                + ", warm-up " + config.getWarmupSeconds() + " s, measurement " + config.getDurationSeconds() + " s");
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int reportInterval = config.getReportIntervalSeconds();
+        reporter.scheduleAtFixedRate(this::reportProgress, reportInterval, reportInterval, TimeUnit.SECONDS);
+
+        try {
+            if (config.getMode() == LoadGeneratorConfig.Mode.OPEN) {
+                runOpenLoop(startNanos);
+            } else {
+                runClosedLoop();
+            }
+        } finally {
+            reporter.shutdownNow();
+            for (ManagedChannel channel : channels) {
+                channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+        }
+        printSummary();
+    }
+
+    private void runOpenLoop(long startNanos) throws InterruptedException {
+        int channelCount = channels.size();
+        long scheduledCalls = (endNanos - startNanos) * config.getRate() / NANOS_PER_SECOND;
+        for (long call = 0; call < scheduledCalls; call++) {
+            long intendedStartNanos = startNanos + call * NANOS_PER_SECOND / config.getRate();
+            if (System.nanoTime() - endNanos >= 0) {
+                // The server could not keep up; don't let the backlog stretch the run indefinitely.
+                notStarted = scheduledCalls - call;
+                break;
+            }
+            long waitNanos = intendedStartNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            int channel = (int) (call % channelCount);
+            Semaphore channelPermits = permits.get(channel);
+            // Blocking here delays the following calls too, but their latency still counts from their schedule.
+            channelPermits.acquireUninterruptibly();
+            issue(channel, call, intendedStartNanos, status -> channelPermits.release());
+        }
+        awaitOutstandingCalls();
+    }
+
+    private void runClosedLoop() throws InterruptedException {
+        int slots = channels.size() * config.getConcurrency();
+        CountDownLatch finished = new CountDownLatch(slots);
+        ExecutorService failedCallExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-failed-calls");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int slot = 0; slot < slots; slot++) {
+                startClosedLoopCall(slot % channels.size(), finished, failedCallExecutor);
+            }
+            long drainNanos = endNanos - System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            if (!finished.await(drainNanos, TimeUnit.NANOSECONDS)) {
+                logger.warning("Outstanding calls did not complete within 30 seconds after the run");
+            }
+        } finally {
+            failedCallExecutor.shutdownNow();
+        }
+    }
+
+    private void startClosedLoopCall(int channel, CountDownLatch finished, Executor failedCallExecutor) {
+        long now = System.nanoTime();
+        if (now - endNanos >= 0) {
+            finished.countDown();
+            return;
+        }
+        issue(channel, sequence.getAndIncrement(), now, status -> {
+            if (status.isOk()) {
+                startClosedLoopCall(channel, finished, failedCallExecutor);
+            } else {
+                // A call can fail on the thread that started it (e.g. while the server is down), so restarting
+                // it inline would recurse until the stack overflows.
+                failedCallExecutor.execute(() -> startClosedLoopCall(channel, finished, failedCallExecutor));
+            }
+        });
+    }
+
+    private void issue(int channel, long call, long intendedStartNanos, OrderRpc.CallListener onComplete) {
+        OrderRpc rpc = schedule[(int) (call % schedule.length)];
+        rpc.start(stubs.get(channel), call, config.getStreamMessages(), status -> {
+            long latencyNanos = System.nanoTime() - intendedStartNanos;
+            if (intendedStartNanos - measureStartNanos >= 0) {
+                record(rpc, latencyNanos, status);
+            }
+            onComplete.onClose(status);
+        });
+    }
+
+    private void record(OrderRpc rpc, long latencyNanos, Status status) {
+        long expectedIntervalNanos = config.getMode() == LoadGeneratorConfig.Mode.CLOSED
+                ? TimeUnit.MICROSECONDS.toNanos(config.getExpectedIntervalMicros()) : 0;
+        if (expectedIntervalNanos > 0) {
+            latency.recordValueWithExpectedInterval(latencyNanos, expectedIntervalNanos);
+            rpcLatency.get(rpc).recordValueWithExpectedInterval(latencyNanos, expectedIntervalNanos);
+        } else {
+            latency.recordValue(latencyNanos);
+            rpcLatency.get(rpc).recordValue(latencyNanos);
+        }
+        rpcCalls.get(rpc).increment();
+        statusCounts.computeIfAbsent(status.getCode(), code -> new LongAdder()).increment();
+    }
+
+    private void awaitOutstandingCalls() throws InterruptedException {
+        for (Semaphore channelPermits : permits) {
+            if (!channelPermits.tryAcquire(config.getConcurrency(), 30, TimeUnit.SECONDS)) {
+                logger.warning("Outstanding calls did not complete within 30 seconds after the run");
+                return;
+            }
+        }
+    }
+
+    private synchronized void reportProgress() {
+        if (System.nanoTime() - measureStartNanos < 0) {
+            logger.info("Warming up ...");
+            return;
+        }
+        Histogram interval = latency.getIntervalHistogram();
+        accumulatedLatency.add(interval);
+        long calls = rpcCalls.values().stream().mapToLong(LongAdder::sum).sum();
+        long intervalCalls = calls - reportedCalls;
+        reportedCalls = calls;
+        double seconds = config.getReportIntervalSeconds();
+        logger.info(String.format("%,d calls, %,.0f calls/s, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                intervalCalls, intervalCalls / seconds,
+                interval.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                interval.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                interval.getMaxValue() / NANOS_PER_MILLI));
+    }
+
+    private synchronized void printSummary() throws FileNotFoundException {
+        accumulatedLatency.add(latency.getIntervalHistogram());
+        long count = rpcCalls.values().stream().mapToLong(LongAdder::sum).sum();
+        double seconds = config.getDurationSeconds();
+
+        System.out.println();
+        System.out.println("Summary:");
+        System.out.printf("  Load:          %s%n", describeLoad());
+        System.out.printf("  Count:         %,d%n", count);
+        System.out.printf("  Duration:      %d s%n", config.getDurationSeconds());
+        System.out.printf("  Requests/sec:  %,.1f%n", count / seconds);
+        System.out.printf("  Fastest:       %.3f ms%n", accumulatedLatency.getMinValue() / NANOS_PER_MILLI);
+        System.out.printf("  Slowest:       %.3f ms%n", accumulatedLatency.getMaxValue() / NANOS_PER_MILLI);
+        System.out.printf("  Average:       %.3f ms%n", accumulatedLatency.getMean() / NANOS_PER_MILLI);
+        if (notStarted > 0) {
+            System.out.printf("  Not started:   %,d scheduled calls, the target rate is above what the server sustains%n",
+                    notStarted);
+        }
+        System.out.println();
+        System.out.println("Latency distribution (" + latencyBasis() + "):");
+        for (double percentile : new double[]{10, 25, 50, 75, 90, 95, 99, 99.9, 99.99}) {
+            System.out.printf("  %6s %% in %.3f ms%n", percentile,
+                    accumulatedLatency.getValueAtPercentile(percentile) / NANOS_PER_MILLI);
+        }
+        System.out.println();
+        System.out.println("Per RPC:");
+        System.out.printf("  %-14s %12s %12s %12s %12s%n", "method", "count", "p50 ms", "p99 ms", "max ms");
+        for (Map.Entry<OrderRpc, Recorder> entry : rpcLatency.entrySet()) {
+            Histogram histogram = entry.getValue().getIntervalHistogram();
+            System.out.printf("  %-14s %,12d %12.3f %12.3f %12.3f%n", entry.getKey().getMethodName(),
+                    rpcCalls.get(entry.getKey()).sum(),
+                    histogram.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                    histogram.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                    histogram.getMaxValue() / NANOS_PER_MILLI);
+        }
+        System.out.println();
+        System.out.println("Status code distribution:");
+        statusCounts.forEach((code, responses) ->
+                System.out.printf("  [%s] %,d responses%n", code, responses.sum()));
+
+        if (config.getHistogramFile() != null) {
+            try (PrintStream out = new PrintStream(config.getHistogramFile())) {
+                accumulatedLatency.outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+            System.out.println();
+            System.out.println("Latency distribution (ms) written to " + config.getHistogramFile());
+        }
+    }
+
+    private String describeLoad() {
+        if (config.getMode() == LoadGeneratorConfig.Mode.OPEN) {
+            return String.format("open loop at %,d calls/s, %d channel(s), up to %d concurrent calls per channel",
+                    config.getRate(), config.getChannels(), config.getConcurrency());
+        }
+        return String.format("closed loop, %d channel(s) x %d concurrent calls",
+                config.getChannels(), config.getConcurrency());
+    }
+
+    private String latencyBasis() {
+        if (config.getMode() == LoadGeneratorConfig.Mode.OPEN) {
+            return "from scheduled start, corrected for coordinated omission";
+        }
+        if (config.getExpectedIntervalMicros() > 0) {
+            return "corrected for coordinated omission with an expected interval of "
+                    + config.getExpectedIntervalMicros() + " us";
+        }
+        return "not corrected for coordinated omission";
+    }
+}
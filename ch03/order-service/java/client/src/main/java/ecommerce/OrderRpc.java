@@ -0,0 +1,139 @@
+package ecommerce;
+
+import com.google.protobuf.StringValue;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * The five {@code OrderManagement} RPCs as issued by {@link OrderLoadGenerator}. Every call is asynchronous and
+ * reports its final status to a {@link CallListener}; request messages are built once up front so the generator
+ * itself allocates as little as possible per call.
+ */
+public enum OrderRpc {
+
+    ADD_ORDER("addOrder") {
+        @Override
+        void start(OrderManagementGrpc.OrderManagementStub stub, long sequence, int streamMessages,
+                   CallListener listener) {
+            stub.addOrder(order(sequence), new CompletionObserver<>(listener));
+        }
+    },
+    GET_ORDER("getOrder") {
+        @Override
+        void start(OrderManagementGrpc.OrderManagementStub stub, long sequence, int streamMessages,
+                   CallListener listener) {
+            stub.getOrder(orderId(sequence), new CompletionObserver<>(listener));
+        }
+    },
+    SEARCH_ORDERS("searchOrders") {
+        @Override
+        void start(OrderManagementGrpc.OrderManagementStub stub, long sequence, int streamMessages,
+                   CallListener listener) {
+            stub.searchOrders(SEARCH_TERM, new CompletionObserver<>(listener));
+        }
+    },
+    UPDATE_ORDERS("updateOrders") {
+        @Override
+        void start(OrderManagementGrpc.OrderManagementStub stub, long sequence, int streamMessages,
+                   CallListener listener) {
+            StreamObserver<OrderManagementOuterClass.Order> requests =
+                    stub.updateOrders(new CompletionObserver<>(listener));
+            for (int i = 0; i < streamMessages; i++) {
+                requests.onNext(order(sequence + i));
+            }
+            requests.onCompleted();
+        }
+    },
+    PROCESS_ORDERS("processOrders") {
+        @Override
+        void start(OrderManagementGrpc.OrderManagementStub stub, long sequence, int streamMessages,
+                   CallListener listener) {
+            StreamObserver<StringValue> requests = stub.processOrders(new CompletionObserver<>(listener));
+            for (int i = 0; i < streamMessages; i++) {
+                requests.onNext(orderId(sequence + i));
+            }
+            requests.onCompleted();
+        }
+    };
+
+    // Orders added by the generator reuse a bounded set of IDs so a long run doesn't grow the server's store, and
+    // don't match SEARCH_TERM so searchOrders keeps returning the same seeded orders.
+    private static final int ADDED_ORDER_IDS = 1024;
+    private static final OrderManagementOuterClass.Order[] ORDERS = new OrderManagementOuterClass.Order[ADDED_ORDER_IDS];
+    // IDs of the orders the server is seeded with.
+    private static final StringValue[] SEEDED_ORDER_IDS = new StringValue[5];
+    private static final StringValue SEARCH_TERM = StringValue.newBuilder().setValue("Google").build();
+
+    static {
+        for (int i = 0; i < ORDERS.length; i++) {
+            ORDERS[i] = OrderManagementOuterClass.Order.newBuilder()
+                    .setId("load-" + i)
+                    .addItems("Apple Watch S4").addItems("iPad Pro")
+                    .setDestination(i % 2 == 0 ? "San Jose, CA" : "Mountain View, CA")
+                    .setPrice(1800)
+                    .build();
+        }
+        for (int i = 0; i < SEEDED_ORDER_IDS.length; i++) {
+            SEEDED_ORDER_IDS[i] = StringValue.newBuilder().setValue(String.valueOf(102 + i)).build();
+        }
+    }
+
+    private final String methodName;
+
+    OrderRpc(String methodName) {
+        this.methodName = methodName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public static OrderRpc forMethodName(String methodName) {
+        for (OrderRpc rpc : values()) {
+            if (rpc.methodName.equals(methodName)) {
+                return rpc;
+            }
+        }
+        throw new IllegalArgumentException("Unknown OrderManagement method : " + methodName);
+    }
+
+    /**
+     * Starts one call. Streaming calls send {@code streamMessages} requests and half-close straight away.
+     */
+    abstract void start(OrderManagementGrpc.OrderManagementStub stub, long sequence, int streamMessages,
+                        CallListener listener);
+
+    private static OrderManagementOuterClass.Order order(long sequence) {
+        return ORDERS[(int) (sequence % ORDERS.length)];
+    }
+
+    private static StringValue orderId(long sequence) {
+        return SEEDED_ORDER_IDS[(int) (sequence % SEEDED_ORDER_IDS.length)];
+    }
+
+    interface CallListener {
+        void onClose(Status status);
+    }
+
+    private static final class CompletionObserver<T> implements StreamObserver<T> {
+        private final CallListener listener;
+
+        CompletionObserver(CallListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onNext(T value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            listener.onClose(Status.fromThrowable(t));
+        }
+
+        @Override
+        public void onCompleted() {
+            listener.onClose(Status.OK);
+        }
+    }
+}
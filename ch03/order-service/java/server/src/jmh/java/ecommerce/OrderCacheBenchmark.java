@@ -0,0 +1,104 @@
+package ecommerce;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of orders from a {@link SimulatedOrderRepository} of {@code latencyMicros}, directly ({@code cacheSize} 0) or
+ * through an {@link OrderCache}. IDs follow a Zipf distribution over {@code orders} orders, so a few orders are read
+ * most of the time, and every fourth read is part of a scan over all orders, which a plain LRU cache would let flush
+ * the popular orders. The cache statistics are printed after every iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderCacheBenchmark {
+
+    private static final int IDS = 1 << 20;
+
+    @Param({"0", "10000"})
+    public int cacheSize;
+
+    @Param({"200"})
+    public long latencyMicros;
+
+    @Param({"1000000"})
+    public int orders;
+
+    private OrderRepository repository;
+    private OrderCache cache;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ConcurrentOrderStore store = new ConcurrentOrderStore(orders);
+        for (int i = 0; i < orders; i++) {
+            store.put(OrderManagementOuterClass.Order.newBuilder()
+                    .setId(Integer.toString(i))
+                    .addItems("Item " + i)
+                    .setDestination("San Jose, CA")
+                    .setPrice(i)
+                    .build());
+        }
+        repository = new SimulatedOrderRepository(store, latencyMicros);
+        cache = cacheSize == 0 ? null : new OrderCache(repository, cacheSize);
+
+        double[] cumulative = new double[orders];
+        double sum = 0;
+        for (int i = 0; i < orders; i++) {
+            sum += 1 / Math.pow(i + 1, 0.9);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(42);
+        ids = new String[IDS];
+        for (int i = 0; i < IDS; i++) {
+            int rank;
+            if (i % 4 == 0) {
+                rank = i / 4 % orders;
+            } else {
+                rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                rank = Math.min(rank < 0 ? -rank - 1 : rank, orders - 1);
+            }
+            ids[i] = Integer.toString(rank);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printStats() {
+        if (cache != null) {
+            System.out.println("  " + cache.stats());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public OrderManagementOuterClass.Order getOrder() {
+        String id = ids[ThreadLocalRandom.current().nextInt(IDS)];
+        return (cache == null ? repository.load(id) : cache.get(id)).join();
+    }
+}
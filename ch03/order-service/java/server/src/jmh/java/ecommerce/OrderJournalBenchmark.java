@@ -0,0 +1,155 @@
+package ecommerce;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of journaling orders with {@link JournaledOrderStore}:
+ * <ul>
+ *     <li>{@code persist*} - acknowledged puts, waiting for the sync when {@code fsync} is on. With 16 threads one
+ *     fsync acknowledges the orders of many threads (group commit).</li>
+ *     <li>{@code recover} - opening a journal of {@code recoveredOrders} orders, either all in journal segments or
+ *     in a snapshot.</li>
+ * </ul>
+ * The journal is written to a temporary directory, {@code java.io.tmpdir} by default, so results depend on the device
+ * behind it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderJournalBenchmark {
+
+    private static final int ORDER_COUNT = 100_000;
+
+    @State(Scope.Benchmark)
+    public static class Journal {
+
+        @Param({"true", "false"})
+        public boolean fsync;
+
+        @Param({"0", "500"})
+        public long groupCommitMicros;
+
+        JournaledOrderStore store;
+        OrderManagementOuterClass.Order[] orders;
+        private Path dir;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("order-journal");
+            store = JournaledOrderStore.open(new JournalConfig(dir, 64 * 1024 * 1024, fsync, groupCommitMicros,
+                    1024 * 1024, 0, 1), new ConcurrentOrderStore(ORDER_COUNT));
+            orders = newOrders(ORDER_COUNT);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            store.close();
+            delete(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovery {
+
+        @Param({"1000000"})
+        public int recoveredOrders;
+
+        @Param({"segments", "snapshot"})
+        public String layout;
+
+        JournalConfig config;
+        private Path dir;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("order-journal");
+            config = new JournalConfig(dir, 64 * 1024 * 1024, false, 0, 1024 * 1024, 0,
+                    Runtime.getRuntime().availableProcessors());
+            try (JournaledOrderStore store = JournaledOrderStore.open(config, new ConcurrentOrderStore())) {
+                for (OrderManagementOuterClass.Order order : newOrders(recoveredOrders)) {
+                    store.put(order);
+                }
+                if ("snapshot".equals(layout)) {
+                    store.snapshot();
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(dir);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void persist01(Journal journal) {
+        persist(journal);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void persist16(Journal journal) {
+        persist(journal);
+    }
+
+    private static void persist(Journal journal) {
+        journal.store.persist(journal.orders[ThreadLocalRandom.current().nextInt(ORDER_COUNT)]).join();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public int recover(Recovery recovery) throws IOException {
+        try (JournaledOrderStore store = JournaledOrderStore.open(recovery.config,
+                new ConcurrentOrderStore(recovery.recoveredOrders))) {
+            return store.size();
+        }
+    }
+
+    private static OrderManagementOuterClass.Order[] newOrders(int count) {
+        OrderManagementOuterClass.Order[] orders = new OrderManagementOuterClass.Order[count];
+        for (int i = 0; i < count; i++) {
+            orders[i] = OrderManagementOuterClass.Order.newBuilder()
+                    .setId(Integer.toString(i))
+                    .addItems("Item " + i)
+                    .setDestination("San Jose, CA")
+                    .setPrice(i)
+                    .build();
+        }
+        return orders;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package ecommerce;
+
+import com.google.protobuf.StringValue;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Baseline for every RPC shape of the {@code OrderManagement} service over the in-process transport and over
+ * loopback Netty: unary ({@code addOrder}, {@code getOrder}), server streaming ({@code searchOrders}), client
+ * streaming ({@code updateOrders}) and bidirectional streaming ({@code processOrders}).
+ *
+ * Reports throughput and sampled latency percentiles. Run with {@code -prof gc} to get the allocation per operation
+ * ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderRpcBenchmark {
+
+    @Param({"inprocess", "netty"})
+    public String transport;
+
+    @Param({"10"})
+    public int ordersPerStream;
+
+    private PrintStream originalOut;
+    private Server server;
+    private ManagedChannel channel;
+    private OrderManagementGrpc.OrderManagementBlockingStub blockingStub;
+    private OrderManagementGrpc.OrderManagementStub asyncStub;
+
+    private final OrderManagementOuterClass.Order order = OrderManagementOuterClass.Order.newBuilder()
+            .setId("101")
+            .addItems("iPhone XS").addItems("Mac Book Pro")
+            .setDestination("San Jose, CA")
+            .setPrice(2300)
+            .build();
+    private final StringValue orderId = StringValue.newBuilder().setValue("102").build();
+    private final StringValue searchTerm = StringValue.newBuilder().setValue("Google").build();
+    private final String[] processedIds = {"102", "103", "104", "105", "106"};
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // The service logs every call, keep the console out of the measurement.
+        Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        originalOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        ServerBuilder<?> serverBuilder;
+        if ("inprocess".equals(transport)) {
+            String name = InProcessServerBuilder.generateName();
+            serverBuilder = InProcessServerBuilder.forName(name);
+            channel = InProcessChannelBuilder.forName(name).build();
+        } else {
+            serverBuilder = ServerBuilder.forPort(0);
+        }
+        server = serverBuilder.addService(new OrderMgtServiceImpl()).build().start();
+        if (channel == null) {
+            channel = NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+        }
+        blockingStub = OrderManagementGrpc.newBlockingStub(channel);
+        asyncStub = OrderManagementGrpc.newStub(channel);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public StringValue unaryAddOrder() {
+        return blockingStub.addOrder(order);
+    }
+
+    @Benchmark
+    public OrderManagementOuterClass.Order unaryGetOrder() {
+        return blockingStub.getOrder(orderId);
+    }
+
+    @Benchmark
+    public void serverStreamingSearchOrders(Blackhole blackhole) {
+        Iterator<OrderManagementOuterClass.Order> matchingOrders = blockingStub.searchOrders(searchTerm);
+        while (matchingOrders.hasNext()) {
+            blackhole.consume(matchingOrders.next());
+        }
+    }
+
+    @Benchmark
+    public StringValue clientStreamingUpdateOrders() throws Exception {
+        ResponseFuture<StringValue> response = new ResponseFuture<>();
+        StreamObserver<OrderManagementOuterClass.Order> requests = asyncStub.updateOrders(response);
+        for (int i = 0; i < ordersPerStream; i++) {
+            requests.onNext(order);
+        }
+        requests.onCompleted();
+        return response.get();
+    }
+
+    @Benchmark
+    public OrderManagementOuterClass.CombinedShipment bidiStreamingProcessOrders() throws Exception {
+        ResponseFuture<OrderManagementOuterClass.CombinedShipment> lastShipment = new ResponseFuture<>();
+        StreamObserver<StringValue> requests = asyncStub.processOrders(lastShipment);
+        for (int i = 0; i < ordersPerStream; i++) {
+            requests.onNext(StringValue.newBuilder().setValue(processedIds[i % processedIds.length]).build());
+        }
+        requests.onCompleted();
+        return lastShipment.get();
+    }
+
+    /**
+     * Completes with the last response once the server completes the call.
+     */
+    private static class ResponseFuture<T> extends CompletableFuture<T> implements StreamObserver<T> {
+        private T last;
+
+        @Override
+        public void onNext(T value) {
+            last = value;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            complete(last);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ecommerce;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Compares {@link ConcurrentOrderStore} with a synchronized map under a mixed read/write load (80% gets, 20% puts)
+ * at 1, 8 and 32 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderStoreBenchmark {
+
+    private static final int ORDER_COUNT = 100_000;
+
+    @Param({"concurrent", "synchronized"})
+    public String store;
+
+    private OrderStore orderStore;
+    private OrderManagementOuterClass.Order[] orders;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderStore = "concurrent".equals(store) ? new ConcurrentOrderStore(ORDER_COUNT) : new SynchronizedOrderStore();
+        orders = new OrderManagementOuterClass.Order[ORDER_COUNT];
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            orders[i] = OrderManagementOuterClass.Order.newBuilder()
+                    .setId(Integer.toString(i))
+                    .addItems("Item " + i)
+                    .setDestination("San Jose, CA")
+                    .setPrice(i)
+                    .build();
+            orderStore.put(orders[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads01() {
+        return mixedOp();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object threads08() {
+        return mixedOp();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Object threads32() {
+        return mixedOp();
+    }
+
+    private Object mixedOp() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        OrderManagementOuterClass.Order order = orders[random.nextInt(ORDER_COUNT)];
+        if (random.nextInt(10) < 2) {
+            orderStore.put(order);
+            return order;
+        }
+        return orderStore.get(order.getId());
+    }
+
+    /**
+     * Baseline: what the service would get from wrapping its original {@code HashMap} in a single lock.
+     */
+    static class SynchronizedOrderStore implements OrderStore {
+
+        private final Map<String, OrderManagementOuterClass.Order> orders = new HashMap<>();
+
+        @Override
+        public synchronized OrderManagementOuterClass.Order get(String id) {
+            return orders.get(id);
+        }
+
+        @Override
+        public synchronized void put(OrderManagementOuterClass.Order order) {
+            orders.put(order.getId(), order);
+        }
+
+        @Override
+        public synchronized void forEach(Consumer<OrderManagementOuterClass.Order> action) {
+            orders.values().forEach(action);
+        }
+
+        @Override
+        public synchronized int size() {
+            return orders.size();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package ecommerce;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap footprint and garbage collection cost of {@link ConcurrentOrderStore} and {@link OffHeapOrderStore} holding
+ * 10M orders.
+ *
+ * When the store has been filled, the retained heap per order and the duration of a full collection are printed.
+ * After every iteration the number and total duration of the collections during it are printed. {@code getOrder}
+ * returns what the service hands to the transport, the order for the heap store and the stored bytes for the off-heap
+ * store; {@code updateOrder} replaces an order, which leaves the previous one as garbage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=2g"})
+@State(Scope.Benchmark)
+public class OrderStoreFootprintBenchmark {
+
+    private static final int UPDATES = 1 << 12;
+
+    @Param({"concurrent", "offHeap"})
+    public String store;
+
+    @Param({"10000000"})
+    public int orders;
+
+    private OrderStore orderStore;
+    private OrderManagementOuterClass.Order[] updates;
+    private long collections;
+    private long collectionMillis;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long before = usedHeapAfterGc();
+        orderStore = "concurrent".equals(store) ? new ConcurrentOrderStore(orders)
+                : new OffHeapOrderStore(orders, 64 * 1024 * 1024);
+        for (int i = 0; i < orders; i++) {
+            orderStore.put(order(i, i));
+        }
+        long heapBytesPerOrder = (usedHeapAfterGc() - before) / orders;
+        long start = System.nanoTime();
+        System.gc();
+        System.out.println(store + " retains " + heapBytesPerOrder + " bytes of heap per order, a full collection takes "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+
+        updates = new OrderManagementOuterClass.Order[UPDATES];
+        for (int i = 0; i < UPDATES; i++) {
+            int id = ThreadLocalRandom.current().nextInt(orders);
+            updates[i] = order(id, id + 1);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        collections = totalCollections();
+        collectionMillis = totalCollectionMillis();
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        System.out.println("  " + (totalCollections() - collections) + " collections taking "
+                + (totalCollectionMillis() - collectionMillis) + " ms");
+    }
+
+    @Benchmark
+    public Object getOrder() {
+        String id = Integer.toString(ThreadLocalRandom.current().nextInt(orders));
+        return orderStore.keepsSerializedOrders() ? orderStore.getSerialized(id) : orderStore.get(id);
+    }
+
+    @Benchmark
+    public void updateOrder() {
+        orderStore.put(updates[ThreadLocalRandom.current().nextInt(UPDATES)].toBuilder().build());
+    }
+
+    private static OrderManagementOuterClass.Order order(int id, int price) {
+        return OrderManagementOuterClass.Order.newBuilder()
+                .setId(Integer.toString(id))
+                .addItems("Item " + id)
+                .setDestination("San Jose, CA")
+                .setPrice(price)
+                .build();
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long totalCollections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long totalCollectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,88 @@
+package ecommerce;
+
+import ecommerce.bootstrap.SerializedMessageMarshaller;
+import io.grpc.Drainable;
+import io.grpc.MethodDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU spent writing a getOrder response to the transport, with the generated protobuf marshaller and with the
+ * {@link SerializedMessageMarshaller} used when the order store keeps orders serialized. Both drain the response stream
+ * the way the transport does, into a stream that discards the bytes, so the difference is the serialization of the
+ * order. {@code items} sets the size of the order.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseMarshallingBenchmark {
+
+    @Param({"1", "20"})
+    public int items;
+
+    private MethodDescriptor.Marshaller<OrderManagementOuterClass.Order> protoMarshaller;
+    private OrderManagementOuterClass.Order order;
+    private ByteBuffer serialized;
+    private OutputStream discard;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        protoMarshaller = OrderManagementGrpc.getGetOrderMethod().getResponseMarshaller();
+        OrderManagementOuterClass.Order.Builder builder = OrderManagementOuterClass.Order.newBuilder()
+                .setId("102")
+                .setDescription("Oxford Bookstore")
+                .setDestination("Mountain View, CA")
+                .setPrice(1800);
+        for (int i = 0; i < items; i++) {
+            builder.addItems("Item " + i);
+        }
+        order = builder.build();
+        PreSerializedOrderStore store = new PreSerializedOrderStore();
+        store.put(order);
+        serialized = store.getSerialized(order.getId());
+        discard = new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(b);
+            }
+        };
+    }
+
+    @Benchmark
+    public int protobuf() throws IOException {
+        return drain(protoMarshaller.stream(order));
+    }
+
+    @Benchmark
+    public int preSerialized() throws IOException {
+        return drain(SerializedMessageMarshaller.INSTANCE.stream(serialized));
+    }
+
+    private int drain(InputStream stream) throws IOException {
+        return ((Drainable) stream).drainTo(discard);
+    }
+}
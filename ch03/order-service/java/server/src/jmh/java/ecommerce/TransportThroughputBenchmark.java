@@ -0,0 +1,75 @@
+package ecommerce;
+
+import com.google.protobuf.StringValue;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.netty.NettyChannelBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unary {@code getOrder} throughput over loopback with the default {@code ServerBuilder} (NIO) and with the tuned
+ * {@link NettyTransportConfig} (epoll where available, pooled direct buffers). The client side is identical in both.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class TransportThroughputBenchmark {
+
+    @Param({"nio-default", "tuned"})
+    public String transport;
+
+    private NettyTransportConfig transportConfig;
+    private Server server;
+    private ManagedChannel channel;
+    private OrderManagementGrpc.OrderManagementBlockingStub stub;
+    private final StringValue orderId = StringValue.newBuilder().setValue("102").build();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ServerBuilder<?> builder;
+        if ("tuned".equals(transport)) {
+            transportConfig = NettyTransportConfig.fromSystemProperties();
+            builder = transportConfig.newServerBuilder(0);
+        } else {
+            builder = ServerBuilder.forPort(0);
+        }
+        server = builder.addService(new OrderMgtServiceImpl()).build().start();
+        channel = NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+        stub = OrderManagementGrpc.newBlockingStub(channel);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        if (transportConfig != null) {
+            transportConfig.shutdown();
+        }
+    }
+
+    @Benchmark
+    public OrderManagementOuterClass.Order getOrder() {
+        return stub.getOrder(orderId);
+    }
+}
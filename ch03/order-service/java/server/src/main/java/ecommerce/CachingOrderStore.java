@@ -0,0 +1,80 @@
+package ecommerce;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * {@link OrderStore} for orders kept by an {@link OrderRepository}, which reads them through an {@link OrderCache}.
+ * Writes go to the repository and invalidate the cached order once the repository has stored it, whether or not it
+ * succeeded, so the next read loads the order as the repository has it.
+ */
+public class CachingOrderStore implements OrderStore {
+
+    private static final Logger logger = Logger.getLogger(CachingOrderStore.class.getName());
+
+    private final OrderRepository repository;
+    private final OrderCache cache;
+
+    /**
+     * @param repository closed with the store
+     * @param cache      a cache of {@code repository}
+     */
+    public CachingOrderStore(OrderRepository repository, OrderCache cache) {
+        this.repository = repository;
+        this.cache = cache;
+    }
+
+    /**
+     * Waits for the order to be loaded if it isn't cached.
+     */
+    @Override
+    public OrderManagementOuterClass.Order get(String id) {
+        return cache.get(id).join();
+    }
+
+    @Override
+    public CompletableFuture<OrderManagementOuterClass.Order> getAsync(String id) {
+        return cache.get(id);
+    }
+
+    @Override
+    public void put(OrderManagementOuterClass.Order order) {
+        persist(order).join();
+    }
+
+    @Override
+    public CompletableFuture<Void> persist(OrderManagementOuterClass.Order order) {
+        return repository.save(order).whenComplete((saved, failure) -> cache.invalidate(order.getId()));
+    }
+
+    @Override
+    public CompletableFuture<Void> persistAll(List<OrderManagementOuterClass.Order> orders) {
+        return repository.saveAll(orders).whenComplete((saved, failure) -> {
+            for (OrderManagementOuterClass.Order order : orders) {
+                cache.invalidate(order.getId());
+            }
+        });
+    }
+
+    @Override
+    public void forEach(Consumer<OrderManagementOuterClass.Order> action) {
+        repository.forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return repository.size();
+    }
+
+    public OrderCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void close() {
+        logger.info("Order cache - " + cache.stats());
+        repository.close();
+    }
+}
@@ -0,0 +1,42 @@
+package ecommerce;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Default {@link OrderStore} backed by a {@link ConcurrentHashMap}.
+ * Reads are lock-free and writes only lock the hash bin they touch, so throughput grows with the number of cores.
+ */
+public class ConcurrentOrderStore implements OrderStore {
+
+    private final ConcurrentMap<String, OrderManagementOuterClass.Order> orders;
+
+    public ConcurrentOrderStore() {
+        this(16);
+    }
+
+    public ConcurrentOrderStore(int initialCapacity) {
+        this.orders = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    @Override
+    public OrderManagementOuterClass.Order get(String id) {
+        return orders.get(id);
+    }
+
+    @Override
+    public void put(OrderManagementOuterClass.Order order) {
+        orders.put(order.getId(), order);
+    }
+
+    @Override
+    public void forEach(Consumer<OrderManagementOuterClass.Order> action) {
+        orders.values().forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return orders.size();
+    }
+}
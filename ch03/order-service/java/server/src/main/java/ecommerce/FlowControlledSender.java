@@ -0,0 +1,103 @@
+package ecommerce;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Sends the elements of an iterator as a server stream while respecting flow control. Elements are only pulled from
+ * the iterator while {@link ServerCallStreamObserver#isReady()} is true, and sending resumes from the call's onReady
+ * callback, so a slow client never makes the server buffer the rest of the stream in memory.
+ *
+ * The iterator yields futures, e.g. orders being loaded from a backend, and elements that complete with {@code null}
+ * are skipped. An element that is still loading never blocks the onReady callback: sending resumes on the thread
+ * that completes it. That thread and the call's executor can both run the sender, so it synchronizes on itself.
+ */
+final class FlowControlledSender<T> implements Runnable {
+
+    private final ServerCallStreamObserver<T> responseObserver;
+    private final Iterator<CompletableFuture<T>> source;
+    // Guarded by this.
+    private CompletableFuture<T> pending;
+    private boolean waiting;
+    private boolean completed;
+
+    private FlowControlledSender(ServerCallStreamObserver<T> responseObserver, Iterator<CompletableFuture<T>> source) {
+        this.responseObserver = responseObserver;
+        this.source = source;
+    }
+
+    /**
+     * Streams the values of {@code source} to {@code responseObserver} and completes the call once the iterator is
+     * exhausted, or fails it with {@code UNAVAILABLE} if an element fails. Must be called from the service method,
+     * before it returns.
+     */
+    static <T> void send(StreamObserver<T> responseObserver, Iterator<CompletableFuture<T>> source) {
+        if (!(responseObserver instanceof ServerCallStreamObserver)) {
+            // Not a gRPC call (e.g. invoked directly), there is no transport to push back.
+            source.forEachRemaining(element -> {
+                T value = element.join();
+                if (value != null) {
+                    responseObserver.onNext(value);
+                }
+            });
+            responseObserver.onCompleted();
+            return;
+        }
+        FlowControlledSender<T> sender =
+                new FlowControlledSender<>((ServerCallStreamObserver<T>) responseObserver, source);
+        sender.responseObserver.setOnReadyHandler(sender);
+        // The call may already have been ready before the handler was registered.
+        sender.run();
+    }
+
+    @Override
+    public synchronized void run() {
+        if (completed || responseObserver.isCancelled()) {
+            return;
+        }
+        while (responseObserver.isReady()) {
+            if (pending == null) {
+                if (!source.hasNext()) {
+                    break;
+                }
+                pending = source.next();
+            }
+            if (!pending.isDone()) {
+                if (!waiting) {
+                    waiting = true;
+                    pending.whenComplete((value, failure) -> resume());
+                }
+                return;
+            }
+            CompletableFuture<T> loaded = pending;
+            pending = null;
+            T value;
+            try {
+                value = loaded.join();
+            } catch (CompletionException | CancellationException e) {
+                completed = true;
+                responseObserver.onError(Status.UNAVAILABLE.withDescription("Stream element could not be loaded")
+                        .withCause(e.getCause()).asRuntimeException());
+                return;
+            }
+            if (value != null) {
+                responseObserver.onNext(value);
+            }
+        }
+        if (pending == null && !source.hasNext()) {
+            completed = true;
+            responseObserver.onCompleted();
+        }
+    }
+
+    private synchronized void resume() {
+        waiting = false;
+        run();
+    }
+}
@@ -0,0 +1,81 @@
+package ecommerce;
+
+/**
+ * Decides when a {@code processOrders} stream flushes its pending combined shipments: after {@code batchSize} orders,
+ * {@code maxBytes} of order payload or {@code maxDelayMillis} since the first pending order, whichever comes first.
+ *
+ * The batch size adapts per stream between {@code minBatchSize} and {@code maxBatchSize}. It follows the number of
+ * orders the client sends within one delay window, and doubles while the outbound transport isn't ready so that
+ * fewer, larger messages are queued for a slow reader.
+ */
+public final class FlushPolicy {
+
+    private final int initialBatchSize;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long maxBytes;
+    private final long maxDelayMillis;
+
+    public FlushPolicy(int initialBatchSize, int minBatchSize, int maxBatchSize, long maxBytes, long maxDelayMillis) {
+        if (minBatchSize < 1 || minBatchSize > maxBatchSize) {
+            throw new IllegalArgumentException("Invalid batch size range: " + minBatchSize + ".." + maxBatchSize);
+        }
+        if (initialBatchSize < minBatchSize || initialBatchSize > maxBatchSize) {
+            throw new IllegalArgumentException("Initial batch size out of range: " + initialBatchSize);
+        }
+        if (maxBytes <= 0 || maxDelayMillis <= 0) {
+            throw new IllegalArgumentException("maxBytes and maxDelayMillis must be positive");
+        }
+        this.initialBatchSize = initialBatchSize;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBytes = maxBytes;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Starts with the original batch of {@link OrderMgtServiceImpl#BATCH_SIZE} orders and never holds orders longer
+     * than 100 ms.
+     */
+    public static FlushPolicy defaultPolicy() {
+        return new FlushPolicy(OrderMgtServiceImpl.BATCH_SIZE, 1, 256, 64 * 1024, 100);
+    }
+
+    /**
+     * A fixed size policy that behaves like the original implementation apart from the time and size bounds.
+     */
+    public static FlushPolicy fixed(int batchSize, long maxBytes, long maxDelayMillis) {
+        return new FlushPolicy(batchSize, batchSize, batchSize, maxBytes, maxDelayMillis);
+    }
+
+    public int getInitialBatchSize() {
+        return initialBatchSize;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Computes the batch size for the next batch of a stream.
+     *
+     * @param inboundIntervalNanos smoothed time between two orders arriving on the stream, or 0 if unknown
+     * @param outboundReady        whether the transport could accept more responses at flush time
+     */
+    int nextBatchSize(int currentBatchSize, double inboundIntervalNanos, boolean outboundReady) {
+        int next = currentBatchSize;
+        if (inboundIntervalNanos > 0) {
+            // As many orders as the client is expected to send within one delay window.
+            double expected = maxDelayMillis * 1_000_000d / inboundIntervalNanos;
+            next = (int) Math.min(Integer.MAX_VALUE, Math.max(1, expected));
+        }
+        if (!outboundReady) {
+            next = Math.max(next, currentBatchSize * 2);
+        }
+        return Math.max(minBatchSize, Math.min(maxBatchSize, next));
+    }
+}
@@ -0,0 +1,77 @@
+package ecommerce;
+
+/**
+ * Approximate access counts for the admission policy of {@link OrderCache}, a count-min sketch of 4-bit counters.
+ *
+ * Each key has one counter in each of four rows and its frequency is the smallest of them, so collisions can only
+ * overestimate it. Sixteen counters are packed into a long. Once the number of increments reaches ten times the size
+ * of the table all counters are halved, so keys that were popular a while ago age out.
+ *
+ * Not thread-safe; the cache calls it under its policy lock.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedKeys number of keys the cache holds, which sets the size of the table
+     */
+    FrequencySketch(int expectedKeys) {
+        int size = Integer.highestOneBit(Math.max(8, Math.min(expectedKeys, 1 << 26)) - 1) << 1;
+        table = new long[size];
+        tableMask = size - 1;
+        sampleSize = 10 * size;
+    }
+
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long word = table[indexOf(hash, row)];
+            frequency = Math.min(frequency, (int) (word >>> shiftOf(hash, row)) & MAX_COUNT);
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = indexOf(hash, row);
+            int shift = shiftOf(hash, row);
+            if (((table[index] >>> shift) & MAX_COUNT) != MAX_COUNT) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    /**
+     * Each row picks one of the sixteen counters of its long with a different nibble of the hash.
+     */
+    private static int shiftOf(int hash, int row) {
+        return ((hash >>> (row << 3)) & 15) << 2;
+    }
+}
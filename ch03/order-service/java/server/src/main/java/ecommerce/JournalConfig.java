@@ -0,0 +1,93 @@
+package ecommerce;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Settings of the order journal of {@link JournaledOrderStore}. Every setting can be overridden with an
+ * {@code order.store.*} system property, e.g. {@code -Dorder.store.dir=/var/lib/orders}. Orders are only kept in
+ * memory unless {@code order.store.dir} is set.
+ */
+public class JournalConfig {
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final boolean fsync;
+    private final long groupCommitMicros;
+    private final long groupCommitBytes;
+    private final long snapshotIntervalSeconds;
+    private final int recoveryThreads;
+
+    /**
+     * @param fsync                   whether orders are acknowledged only once they are on the storage device.
+     *                                Otherwise they are acknowledged once they are in the mapped segment, which
+     *                                survives the process but not the machine going down.
+     * @param groupCommitMicros       how long a sync waits for more orders to join it, 0 syncs right away with the
+     *                                orders that arrived during the previous sync
+     * @param groupCommitBytes        bytes of orders after which a sync stops waiting for more
+     * @param snapshotIntervalSeconds time between snapshots, after which the journal segments they include are
+     *                                deleted, or 0 for no snapshots
+     */
+    public JournalConfig(Path dir, int segmentBytes, boolean fsync, long groupCommitMicros, long groupCommitBytes,
+                         long snapshotIntervalSeconds, int recoveryThreads) {
+        if (segmentBytes <= JournalSegment.HEADER_BYTES) {
+            throw new IllegalArgumentException("Segments must be larger than " + JournalSegment.HEADER_BYTES
+                    + " bytes: " + segmentBytes);
+        }
+        if (groupCommitMicros < 0 || groupCommitBytes <= 0 || snapshotIntervalSeconds < 0 || recoveryThreads < 1) {
+            throw new IllegalArgumentException("Invalid journal settings");
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        this.groupCommitMicros = groupCommitMicros;
+        this.groupCommitBytes = groupCommitBytes;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        this.recoveryThreads = recoveryThreads;
+    }
+
+    /**
+     * Returns {@code null} if {@code order.store.dir} is not set.
+     */
+    public static JournalConfig fromSystemProperties() {
+        String dir = System.getProperty("order.store.dir");
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        return new JournalConfig(Paths.get(dir),
+                Integer.getInteger("order.store.segmentBytes", 64 * 1024 * 1024),
+                Boolean.parseBoolean(System.getProperty("order.store.fsync", "true")),
+                Long.getLong("order.store.groupCommitMicros", 0),
+                Long.getLong("order.store.groupCommitBytes", 1024 * 1024),
+                Long.getLong("order.store.snapshotIntervalSeconds", 300),
+                Integer.getInteger("order.store.recoveryThreads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public long getGroupCommitMicros() {
+        return groupCommitMicros;
+    }
+
+    public long getGroupCommitBytes() {
+        return groupCommitBytes;
+    }
+
+    public long getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    public int getRecoveryThreads() {
+        return recoveryThreads;
+    }
+}
@@ -0,0 +1,146 @@
+package ecommerce;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped file of orders, used for the segments of the order journal and the parts of its snapshots.
+ *
+ * Each record is the length of the serialized order plus one, the CRC32 of the serialized order, and the serialized
+ * order. The file is created at its full size, so the zeros after the last record end it; the length is stored plus
+ * one because an order whose fields all have default values serializes to no bytes, and its record must not read as
+ * the end. The length is written last, and a record whose checksum does not match, e.g. one that was only partly on
+ * disk when the machine went down, ends the segment too.
+ *
+ * Appending is not thread-safe.
+ */
+final class JournalSegment {
+
+    static final int HEADER_BYTES = 8;
+
+    private final long index;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+
+    private JournalSegment(long index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path path, long index, int sizeBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            return new JournalSegment(index, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static JournalSegment open(Path path, long index) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return new JournalSegment(index, path, null, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    long index() {
+        return index;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Appends the order, which serializes to {@code size} bytes.
+     *
+     * @return {@code false} if the segment has no room left for it
+     */
+    boolean append(OrderManagementOuterClass.Order order, int size) throws IOException {
+        int position = buffer.position();
+        if (HEADER_BYTES + size > buffer.remaining()) {
+            return false;
+        }
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(position + HEADER_BYTES).limit(position + HEADER_BYTES + size);
+        CodedOutputStream output = CodedOutputStream.newInstance(payload.slice());
+        order.writeTo(output);
+        output.checkNoSpaceLeft();
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, size + 1);
+        buffer.position(position + HEADER_BYTES + size);
+        return true;
+    }
+
+    /**
+     * Whether nothing has been appended yet.
+     */
+    boolean isEmpty() {
+        return buffer.position() == 0;
+    }
+
+    /**
+     * Writes the appended records to the storage device.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Passes every complete record of the segment to {@code action}, in the order they were appended.
+     *
+     * @return {@code true} if the segment ended cleanly, {@code false} if it ended with a torn or corrupt record
+     */
+    boolean replay(Consumer<OrderManagementOuterClass.Order> action) {
+        ByteBuffer records = buffer.duplicate();
+        CRC32 checksum = new CRC32();
+        while (records.remaining() >= HEADER_BYTES) {
+            int position = records.position();
+            int storedSize = records.getInt(position);
+            if (storedSize == 0) {
+                return true;
+            }
+            int size = storedSize - 1;
+            if (size < 0 || size > records.remaining() - HEADER_BYTES) {
+                return false;
+            }
+            ByteBuffer payload = records.duplicate();
+            payload.position(position + HEADER_BYTES).limit(position + HEADER_BYTES + size);
+            checksum.reset();
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != records.getInt(position + 4)) {
+                return false;
+            }
+            try {
+                action.accept(OrderManagementOuterClass.Order.parseFrom(payload));
+            } catch (InvalidProtocolBufferException e) {
+                return false;
+            }
+            records.position(position + HEADER_BYTES + size);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,599 @@
+package ecommerce;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * {@link OrderStore} that writes every order to a journal before it stores it in memory, so the orders survive a
+ * restart.
+ *
+ * The journal is a sequence of memory-mapped {@link JournalSegment}s in {@link JournalConfig#getDir()}. Appending an
+ * order copies it into the current segment; a background thread then syncs the segments to the storage device and
+ * completes the futures returned by {@link #persist}. Orders that arrive while a sync is running, or within
+ * {@link JournalConfig#getGroupCommitMicros()} of the first one, are synced together, so one fsync acknowledges many
+ * orders. The futures complete on the sync thread, so their callbacks should be short.
+ *
+ * An order is in memory, and visible to {@link #get}, as soon as it has been appended. Orders are stored in memory in
+ * journal order while appending holds a lock, so a snapshot taken after starting a new segment contains every order
+ * of the earlier segments. Snapshots are written periodically as a directory of segment files, which replaces the
+ * earlier segments once it is complete.
+ *
+ * On startup the latest snapshot and the segments written after it are mapped and read in parallel, then applied in
+ * journal order. A record that was only partly written when the process or machine went down ends its segment.
+ */
+public class JournaledOrderStore implements OrderStore {
+
+    private static final Logger logger = Logger.getLogger(JournaledOrderStore.class.getName());
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String PART_PREFIX = "part-";
+    private static final String FILE_SUFFIX = ".log";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final JournalConfig config;
+    private final OrderStore orders;
+    private final Lock lock = new ReentrantLock();
+    private final Condition syncNeeded = lock.newCondition();
+    private final Thread syncer;
+    private final ScheduledExecutorService snapshotScheduler;
+
+    // Guarded by lock.
+    private JournalSegment current;
+    private final List<JournalSegment> unsynced = new ArrayList<>();
+    private List<CompletableFuture<Void>> waiting = new ArrayList<>();
+    private long unsyncedBytes;
+    private boolean directoryChanged;
+    private Throwable failure;
+    private boolean closed;
+    private long snapshotIndex;
+
+    private JournaledOrderStore(JournalConfig config, OrderStore orders, long snapshotIndex, long segmentIndex)
+            throws IOException {
+        this.config = config;
+        this.orders = orders;
+        this.snapshotIndex = snapshotIndex;
+        this.current = JournalSegment.create(segmentPath(segmentIndex), segmentIndex, config.getSegmentBytes());
+        this.directoryChanged = true;
+        if (config.isFsync()) {
+            syncer = new Thread(this::syncLoop, "order-journal-sync");
+            syncer.setDaemon(true);
+            syncer.start();
+        } else {
+            syncer = null;
+        }
+        if (config.getSnapshotIntervalSeconds() > 0) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "order-journal-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly, config.getSnapshotIntervalSeconds(),
+                    config.getSnapshotIntervalSeconds(), TimeUnit.SECONDS);
+        } else {
+            snapshotScheduler = null;
+        }
+    }
+
+    /**
+     * Recovers the orders journaled in the configured directory into {@code orders}, which must be empty, and
+     * journals new orders in a new segment.
+     */
+    public static JournaledOrderStore open(JournalConfig config, OrderStore orders) throws IOException {
+        Path dir = config.getDir();
+        Files.createDirectories(dir);
+        List<Long> snapshots = new ArrayList<>();
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    // A snapshot that was not completed.
+                    deleteRecursively(entry);
+                } else if (name.startsWith(SNAPSHOT_PREFIX)) {
+                    snapshots.add(parseIndex(name, SNAPSHOT_PREFIX, ""));
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+                    segments.add(parseIndex(name, SEGMENT_PREFIX, FILE_SUFFIX));
+                }
+            }
+        }
+        long snapshotIndex = snapshots.isEmpty() ? -1 : Collections.max(snapshots);
+        // Left behind if the process stopped while it deleted what the latest snapshot replaced.
+        deleteBefore(dir, snapshotIndex);
+        segments.removeIf(index -> index < snapshotIndex);
+        Collections.sort(segments);
+
+        long start = System.nanoTime();
+        recover(config, orders, snapshotIndex, segments);
+        logger.info("Recovered " + orders.size() + " orders from " + (snapshotIndex < 0 ? "no snapshot" : "a snapshot")
+                + " and " + segments.size() + " journal segments in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+
+        long segmentIndex = Math.max(snapshotIndex, segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1);
+        return new JournaledOrderStore(config, orders, snapshotIndex, segmentIndex);
+    }
+
+    private static void recover(JournalConfig config, OrderStore orders, long snapshotIndex, List<Long> segments)
+            throws IOException {
+        ExecutorService recoveryPool = Executors.newFixedThreadPool(config.getRecoveryThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "order-journal-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> snapshotParts = new ArrayList<>();
+            if (snapshotIndex >= 0) {
+                try (Stream<Path> parts = Files.list(config.getDir().resolve(snapshotName(snapshotIndex)))) {
+                    for (Path part : (Iterable<Path>) parts::iterator) {
+                        // A snapshot holds every order once, so its parts can be stored in any order.
+                        snapshotParts.add(recoveryPool.submit(() -> replaySnapshotPart(part, orders)));
+                    }
+                }
+            }
+            List<Future<Map<String, OrderManagementOuterClass.Order>>> segmentOrders = new ArrayList<>();
+            for (int i = 0; i < segments.size(); i++) {
+                long index = segments.get(i);
+                boolean last = i == segments.size() - 1;
+                segmentOrders.add(recoveryPool.submit(() -> replaySegment(config.getDir(), index, last)));
+            }
+            for (Future<?> part : snapshotParts) {
+                await(part);
+            }
+            // Later segments replace the orders of earlier ones.
+            for (Future<Map<String, OrderManagementOuterClass.Order>> segment : segmentOrders) {
+                await(segment).values().forEach(orders::put);
+            }
+        } finally {
+            recoveryPool.shutdownNow();
+        }
+    }
+
+    private static Void replaySnapshotPart(Path part, OrderStore orders) throws IOException {
+        if (!JournalSegment.open(part, 0).replay(orders::put)) {
+            throw new IOException("Snapshot part " + part + " is corrupt");
+        }
+        return null;
+    }
+
+    /**
+     * The latest version of every order in the segment.
+     */
+    private static Map<String, OrderManagementOuterClass.Order> replaySegment(Path dir, long index, boolean last)
+            throws IOException {
+        Map<String, OrderManagementOuterClass.Order> latest = new HashMap<>();
+        JournalSegment segment = JournalSegment.open(dir.resolve(segmentName(index)), index);
+        if (!segment.replay(order -> latest.put(order.getId(), order))) {
+            if (last) {
+                logger.info("Journal ends with an incomplete order after " + latest.size() + " orders of "
+                        + segment.path());
+            } else {
+                logger.warning("Journal segment " + segment.path() + " is corrupt after " + latest.size()
+                        + " orders, its later orders are lost");
+            }
+        }
+        return latest;
+    }
+
+    @Override
+    public OrderManagementOuterClass.Order get(String id) {
+        return orders.get(id);
+    }
+
+    @Override
+    public ByteBuffer getSerialized(String id) {
+        return orders.getSerialized(id);
+    }
+
+    @Override
+    public boolean keepsSerializedOrders() {
+        return orders.keepsSerializedOrders();
+    }
+
+    /**
+     * Journals and stores the order without waiting for the journal to be synced.
+     */
+    @Override
+    public void put(OrderManagementOuterClass.Order order) {
+        CompletableFuture<Void> saved = append(order);
+        if (saved.isCompletedExceptionally()) {
+            saved.join();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> persist(OrderManagementOuterClass.Order order) {
+        return append(order);
+    }
+
+    /**
+     * Journals the orders together, so they are acknowledged by the same sync. If an order is larger than a segment,
+     * the batch fails before any of its orders is stored.
+     */
+    @Override
+    public CompletableFuture<Void> persistAll(List<OrderManagementOuterClass.Order> orders) {
+        return append(orders);
+    }
+
+    @Override
+    public void forEach(Consumer<OrderManagementOuterClass.Order> action) {
+        orders.forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return orders.size();
+    }
+
+    private CompletableFuture<Void> append(OrderManagementOuterClass.Order order) {
+        return append(Collections.singletonList(order));
+    }
+
+    private CompletableFuture<Void> append(List<OrderManagementOuterClass.Order> batch) {
+        int[] sizes = new int[batch.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = batch.get(i).getSerializedSize();
+            // Checked before anything is appended, so a batch is either journaled as a whole or not at all.
+            if (JournalSegment.HEADER_BYTES + sizes[i] > config.getSegmentBytes()) {
+                return failed(new IllegalArgumentException("Order " + batch.get(i).getId() + " of " + sizes[i]
+                        + " bytes is larger than a journal segment"));
+            }
+        }
+        lock.lock();
+        long bytes = 0;
+        try {
+            if (closed) {
+                return failed(new IllegalStateException("Order store is closed"));
+            }
+            if (failure != null) {
+                return failed(failure);
+            }
+            for (int i = 0; i < sizes.length; i++) {
+                OrderManagementOuterClass.Order order = batch.get(i);
+                if (!current.append(order, sizes[i])) {
+                    roll();
+                    current.append(order, sizes[i]);
+                }
+                orders.put(order);
+                bytes += JournalSegment.HEADER_BYTES + sizes[i];
+            }
+            if (!config.isFsync()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> synced = new CompletableFuture<>();
+            waiting.add(synced);
+            requestSync(bytes);
+            return synced;
+        } catch (IOException e) {
+            // The orders appended before starting a segment failed are stored, so they still have to be synced.
+            if (config.isFsync() && bytes > 0) {
+                requestSync(bytes);
+            }
+            return failed(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Asks the sync thread to sync {@code bytes} more. Must be called with the lock held.
+     */
+    private void requestSync(long bytes) {
+        unsyncedBytes += bytes;
+        syncNeeded.signal();
+    }
+
+    /**
+     * Starts a new segment. Must be called with the lock held.
+     */
+    private void roll() throws IOException {
+        long index = current.index() + 1;
+        JournalSegment next = JournalSegment.create(segmentPath(index), index, config.getSegmentBytes());
+        if (config.isFsync()) {
+            // Closed by the sync thread once it has been synced. Wakes it even if every order was synced already, e.g.
+            // when a snapshot rolls a segment, so the segment does not stay open after the snapshot deleted its file.
+            unsynced.add(current);
+            directoryChanged = true;
+            syncNeeded.signal();
+        } else {
+            current.close();
+        }
+        current = next;
+    }
+
+    private void syncLoop() {
+        while (true) {
+            List<JournalSegment> segments;
+            List<CompletableFuture<Void>> batch;
+            boolean syncDirectory;
+            Throwable failed;
+            lock.lock();
+            try {
+                while (unsyncedBytes == 0 && unsynced.isEmpty() && !closed) {
+                    syncNeeded.awaitUninterruptibly();
+                }
+                if (unsyncedBytes == 0 && unsynced.isEmpty()) {
+                    return;
+                }
+                // Gives more orders the chance to share this sync.
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(config.getGroupCommitMicros());
+                long remaining;
+                while (!closed && unsyncedBytes < config.getGroupCommitBytes()
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        syncNeeded.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                segments = new ArrayList<>(unsynced);
+                segments.add(current);
+                unsynced.clear();
+                batch = waiting;
+                waiting = new ArrayList<>();
+                unsyncedBytes = 0;
+                syncDirectory = directoryChanged;
+                directoryChanged = false;
+                failed = failure;
+            } finally {
+                lock.unlock();
+            }
+
+            if (failed == null) {
+                try {
+                    for (JournalSegment segment : segments) {
+                        segment.force();
+                    }
+                    if (syncDirectory) {
+                        forceDirectory(config.getDir());
+                    }
+                    for (JournalSegment segment : segments.subList(0, segments.size() - 1)) {
+                        segment.close();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.SEVERE, "Syncing the order journal failed, no more orders are accepted", e);
+                    // After a failed fsync the state of the written pages is unknown, so it is not retried.
+                    lock.lock();
+                    try {
+                        failure = e;
+                    } finally {
+                        lock.unlock();
+                    }
+                    failed = e;
+                }
+            }
+            for (CompletableFuture<Void> synced : batch) {
+                if (failed == null) {
+                    synced.complete(null);
+                } else {
+                    synced.completeExceptionally(failed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every order to a new snapshot and deletes the journal segments and the snapshot it replaces. Called
+     * periodically, and does nothing if no order has been journaled since the previous snapshot.
+     */
+    public synchronized void snapshot() throws IOException {
+        long index;
+        lock.lock();
+        try {
+            if (closed || (current.index() == snapshotIndex && current.isEmpty())) {
+                return;
+            }
+            if (!current.isEmpty()) {
+                roll();
+            }
+            index = current.index();
+        } finally {
+            lock.unlock();
+        }
+
+        long start = System.nanoTime();
+        Path dir = config.getDir();
+        Path temporary = dir.resolve(snapshotName(index) + TEMPORARY_SUFFIX);
+        deleteRecursively(temporary);
+        Files.createDirectory(temporary);
+        int count = writeSnapshot(temporary);
+        Files.move(temporary, dir.resolve(snapshotName(index)), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(dir);
+        lock.lock();
+        try {
+            snapshotIndex = index;
+        } finally {
+            lock.unlock();
+        }
+        deleteBefore(dir, index);
+        logger.info("Snapshot of " + count + " orders written in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Writing an order snapshot failed, keeping the journal", e);
+        }
+    }
+
+    private int writeSnapshot(Path snapshotDir) throws IOException {
+        List<JournalSegment> parts = new ArrayList<>();
+        int[] count = new int[1];
+        try {
+            parts.add(JournalSegment.create(snapshotDir.resolve(partName(0)), 0, config.getSegmentBytes()));
+            orders.forEach(order -> {
+                try {
+                    int size = order.getSerializedSize();
+                    if (!parts.get(parts.size() - 1).append(order, size)) {
+                        parts.add(JournalSegment.create(snapshotDir.resolve(partName(parts.size())), parts.size(),
+                                config.getSegmentBytes()));
+                        parts.get(parts.size() - 1).append(order, size);
+                    }
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            for (JournalSegment part : parts) {
+                part.force();
+            }
+            forceDirectory(snapshotDir);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (JournalSegment part : parts) {
+                part.close();
+            }
+        }
+        return count[0];
+    }
+
+    /**
+     * Stops taking snapshots and syncs the journal. Orders that are put afterwards are rejected.
+     */
+    @Override
+    public void close() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+            try {
+                snapshotScheduler.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            closed = true;
+            syncNeeded.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (syncer != null) {
+            try {
+                syncer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            current.force();
+            current.close();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Closing the order journal failed", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return config.getDir().resolve(segmentName(index));
+    }
+
+    private static String segmentName(long index) {
+        return String.format("%s%016d%s", SEGMENT_PREFIX, index, FILE_SUFFIX);
+    }
+
+    private static String snapshotName(long index) {
+        return String.format("%s%016d", SNAPSHOT_PREFIX, index);
+    }
+
+    private static String partName(int index) {
+        return String.format("%s%08d%s", PART_PREFIX, index, FILE_SUFFIX);
+    }
+
+    private static long parseIndex(String name, String prefix, String suffix) throws IOException {
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected file in the order journal: " + name, e);
+        }
+    }
+
+    /**
+     * Deletes the segments and snapshots that the snapshot with the given index replaces.
+     */
+    private static void deleteBefore(Path dir, long snapshotIndex) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(FILE_SUFFIX)
+                        && parseIndex(name, SEGMENT_PREFIX, FILE_SUFFIX) < snapshotIndex) {
+                    Files.delete(entry);
+                } else if (name.startsWith(SNAPSHOT_PREFIX) && !name.endsWith(TEMPORARY_SUFFIX)
+                        && parseIndex(name, SNAPSHOT_PREFIX, "") < snapshotIndex) {
+                    deleteRecursively(entry);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path child : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(child);
+            }
+        }
+    }
+
+    /**
+     * Syncs the directory entries, so that created, renamed and deleted files survive the machine going down.
+     */
+    private static void forceDirectory(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while recovering the order journal", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Recovering the order journal failed", e.getCause());
+        }
+    }
+
+    private static CompletableFuture<Void> failed(Throwable failure) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+}
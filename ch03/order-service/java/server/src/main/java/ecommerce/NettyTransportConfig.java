@@ -0,0 +1,104 @@
+package ecommerce;
+
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Netty transport settings for {@link OrderMgtServer}. Every setting can be overridden with an
+ * {@code order.server.*} system property, e.g. {@code -Dorder.server.transport=nio}.
+ *
+ * The transport is native epoll when it is available (Linux) and NIO otherwise. Event loop groups are created
+ * here, so {@link #shutdown()} must be called once the server has terminated.
+ */
+public class NettyTransportConfig {
+
+    private static final Logger logger = Logger.getLogger(NettyTransportConfig.class.getName());
+
+    public enum Transport {
+        AUTO, EPOLL, NIO
+    }
+
+    private final Transport transport;
+    private final int bossThreads;
+    private final int workerThreads;
+    private final int flowControlWindow;
+    private final int maxInboundMessageSize;
+    private final int maxConcurrentCallsPerConnection;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+
+    /**
+     * @param workerThreads 0 uses Netty's default of twice the number of processors
+     */
+    public NettyTransportConfig(Transport transport, int bossThreads, int workerThreads, int flowControlWindow,
+                                int maxInboundMessageSize, int maxConcurrentCallsPerConnection) {
+        this.transport = transport;
+        this.bossThreads = bossThreads;
+        this.workerThreads = workerThreads;
+        this.flowControlWindow = flowControlWindow;
+        this.maxInboundMessageSize = maxInboundMessageSize;
+        this.maxConcurrentCallsPerConnection = maxConcurrentCallsPerConnection;
+    }
+
+    public static NettyTransportConfig fromSystemProperties() {
+        return new NettyTransportConfig(
+                Transport.valueOf(System.getProperty("order.server.transport", "auto").toUpperCase()),
+                Integer.getInteger("order.server.bossThreads", 1),
+                Integer.getInteger("order.server.workerThreads", 0),
+                Integer.getInteger("order.server.flowControlWindow", 1024 * 1024),
+                Integer.getInteger("order.server.maxInboundMessageSize", 4 * 1024 * 1024),
+                Integer.getInteger("order.server.maxConcurrentCallsPerConnection", Integer.MAX_VALUE));
+    }
+
+    /**
+     * Creates a server builder with the configured transport. Each call creates new event loop groups.
+     */
+    public NettyServerBuilder newServerBuilder(int port) {
+        boolean useEpoll = transport == Transport.EPOLL || (transport == Transport.AUTO && Epoll.isAvailable());
+        if (transport == Transport.EPOLL && !Epoll.isAvailable()) {
+            throw new IllegalStateException("Native epoll transport is not available", Epoll.unavailabilityCause());
+        }
+        Class<? extends ServerChannel> channelType;
+        if (useEpoll) {
+            bossGroup = new EpollEventLoopGroup(bossThreads, new DefaultThreadFactory("grpc-epoll-boss", true));
+            workerGroup = new EpollEventLoopGroup(workerThreads, new DefaultThreadFactory("grpc-epoll-worker", true));
+            channelType = EpollServerSocketChannel.class;
+        } else {
+            bossGroup = new NioEventLoopGroup(bossThreads, new DefaultThreadFactory("grpc-nio-boss", true));
+            workerGroup = new NioEventLoopGroup(workerThreads, new DefaultThreadFactory("grpc-nio-worker", true));
+            channelType = NioServerSocketChannel.class;
+        }
+        logger.info("Using " + (useEpoll ? "epoll" : "nio") + " transport");
+
+        return NettyServerBuilder.forPort(port)
+                .channelType(channelType)
+                .bossEventLoopGroup(bossGroup)
+                .workerEventLoopGroup(workerGroup)
+                // Pooled direct buffers avoid a heap copy on every socket read and write.
+                .withChildOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .withChildOption(ChannelOption.TCP_NODELAY, true)
+                .flowControlWindow(flowControlWindow)
+                .maxInboundMessageSize(maxInboundMessageSize)
+                .maxConcurrentCallsPerConnection(maxConcurrentCallsPerConnection);
+    }
+
+    public void shutdown() {
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+            workerGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+        }
+    }
+}
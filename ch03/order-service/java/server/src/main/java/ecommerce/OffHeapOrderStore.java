@@ -0,0 +1,328 @@
+package ecommerce;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * {@link OrderStore} that keeps orders serialized in direct memory, outside the Java heap. The heap only holds an
+ * open-addressing index of two primitive arrays, so the garbage collector has a few large arrays to look at instead of
+ * the objects of millions of orders.
+ *
+ * Each record is the length of the order's ID, the length of the serialized order, the ID in UTF-8 and the serialized
+ * order. Records are appended to slabs of direct memory and never change afterwards. The index maps the hash of an ID
+ * to the address of its record, a slab number and an offset.
+ *
+ * Reads never lock: a lookup probes the current index, whose addresses are read with volatile semantics, which
+ * publishes the record written before them. Writes are serialized. Replacing an order leaves its previous record
+ * behind; once such records take up more than half of the slabs, the live records are copied into new slabs.
+ */
+public class OffHeapOrderStore implements OrderStore {
+
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int DEFAULT_SLAB_BYTES = 64 * 1024 * 1024;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final int slabBytes;
+    private volatile Index index;
+    private volatile int size;
+
+    // Guarded by this.
+    private ByteBuffer slab;
+    private long liveBytes;
+    private long deadBytes;
+
+    public OffHeapOrderStore() {
+        this(16, DEFAULT_SLAB_BYTES);
+    }
+
+    /**
+     * @param expectedSize number of orders the store can hold before its index is resized
+     * @param slabBytes    size of the direct buffers that hold the orders, which limits the size of an order
+     */
+    public OffHeapOrderStore(int expectedSize, int slabBytes) {
+        if (expectedSize < 0 || slabBytes <= RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("Invalid store size");
+        }
+        this.slabBytes = slabBytes;
+        int capacity = MIN_CAPACITY;
+        while (capacity < MAX_CAPACITY && Index.threshold(capacity) < expectedSize) {
+            capacity <<= 1;
+        }
+        index = new Index(capacity, new ByteBuffer[0]);
+    }
+
+    @Override
+    public OrderManagementOuterClass.Order get(String id) {
+        ByteBuffer serialized = getSerialized(id);
+        return serialized == null ? null : parse(serialized);
+    }
+
+    /**
+     * Returns a read-only view of the stored bytes, without copying or parsing them.
+     */
+    @Override
+    public ByteBuffer getSerialized(String id) {
+        Index t = index;
+        long address = t.find(id, hash(id), id.getBytes(StandardCharsets.UTF_8));
+        return address == 0 ? null : t.order(address);
+    }
+
+    @Override
+    public boolean keepsSerializedOrders() {
+        return true;
+    }
+
+    @Override
+    public synchronized void put(OrderManagementOuterClass.Order order) {
+        String id = order.getId();
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        int orderBytes = order.getSerializedSize();
+        long recordBytes = (long) RECORD_HEADER_BYTES + idBytes.length + orderBytes;
+        if (recordBytes > slabBytes) {
+            throw new IllegalArgumentException("Order " + id + " of " + orderBytes + " bytes does not fit a slab");
+        }
+        Index t = index;
+        if (slab == null || slab.remaining() < recordBytes) {
+            slab = ByteBuffer.allocateDirect(slabBytes);
+            t = t.withSlab(slab);
+        }
+        int offset = slab.position();
+        slab.putInt(idBytes.length).putInt(orderBytes).put(idBytes);
+        ByteBuffer payload = slab.slice();
+        payload.limit(orderBytes);
+        try {
+            CodedOutputStream output = CodedOutputStream.newInstance(payload);
+            order.writeTo(output);
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        slab.position(slab.position() + orderBytes);
+        long address = (long) (t.slabs.length - 1) << 32 | offset;
+
+        int hash = hash(id);
+        int slot = t.slotOf(hash, idBytes);
+        long previous = t.addresses.get(slot);
+        liveBytes += recordBytes;
+        if (previous != 0) {
+            deadBytes += t.recordBytes(previous);
+            liveBytes -= t.recordBytes(previous);
+            t.addresses.set(slot, address + 1);
+        } else {
+            if (size >= t.threshold) {
+                t = t.resize(t.mask + 1 << 1);
+                slot = t.slotOf(hash, idBytes);
+            }
+            t.hashes[slot] = hash;
+            t.addresses.set(slot, address + 1);
+            size++;
+        }
+        index = t;
+        if (deadBytes > liveBytes && deadBytes > slabBytes) {
+            compact();
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<OrderManagementOuterClass.Order> action) {
+        Index t = index;
+        for (int slot = 0; slot <= t.mask; slot++) {
+            long address = t.addresses.get(slot);
+            if (address != 0) {
+                action.accept(parse(t.order(address)));
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Bytes of direct memory taken by the slabs.
+     */
+    public synchronized long offHeapBytes() {
+        return (long) index.slabs.length * slabBytes;
+    }
+
+    /**
+     * Copies the live records into new slabs, so the slabs that held the replaced records can be freed. Readers keep
+     * using the previous index and slabs until they look up the next order.
+     */
+    private void compact() {
+        Index old = index;
+        ByteBuffer[] slabs = new ByteBuffer[0];
+        ByteBuffer target = null;
+        long[] moved = new long[old.mask + 1];
+        for (int slot = 0; slot <= old.mask; slot++) {
+            long address = old.addresses.get(slot);
+            if (address == 0) {
+                continue;
+            }
+            ByteBuffer record = old.record(address);
+            if (target == null || target.remaining() < record.remaining()) {
+                target = ByteBuffer.allocateDirect(slabBytes);
+                slabs = Arrays.copyOf(slabs, slabs.length + 1);
+                slabs[slabs.length - 1] = target;
+            }
+            moved[slot] = ((long) (slabs.length - 1) << 32 | target.position()) + 1;
+            target.put(record);
+        }
+        Index compacted = new Index(old.mask + 1, slabs);
+        System.arraycopy(old.hashes, 0, compacted.hashes, 0, moved.length);
+        for (int slot = 0; slot < moved.length; slot++) {
+            if (moved[slot] != 0) {
+                compacted.addresses.lazySet(slot, moved[slot]);
+            }
+        }
+        // Published to readers by the volatile write of the index.
+        index = compacted;
+        slab = target;
+        deadBytes = 0;
+    }
+
+    private static OrderManagementOuterClass.Order parse(ByteBuffer serialized) {
+        try {
+            return OrderManagementOuterClass.Order.parseFrom(serialized);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Stored order is corrupt", e);
+        }
+    }
+
+    /**
+     * String hash codes of similar IDs differ in few bits, so they are spread before they are masked.
+     */
+    private static int hash(String id) {
+        int h = id.hashCode() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Index {
+        // The address of the record in slot i plus one, or 0 if the slot is empty.
+        final AtomicLongArray addresses;
+        final int[] hashes;
+        final int mask;
+        final int threshold;
+        // Replaced with a longer copy when a slab is added, before any address refers to the new slab.
+        volatile ByteBuffer[] slabs;
+
+        Index(int capacity, ByteBuffer[] slabs) {
+            addresses = new AtomicLongArray(capacity);
+            hashes = new int[capacity];
+            mask = capacity - 1;
+            threshold = threshold(capacity);
+            this.slabs = slabs;
+        }
+
+        /**
+         * Linear probing stays short up to three quarters full.
+         */
+        static int threshold(int capacity) {
+            return capacity - (capacity >>> 2);
+        }
+
+        Index withSlab(ByteBuffer slab) {
+            ByteBuffer[] extended = Arrays.copyOf(slabs, slabs.length + 1);
+            extended[slabs.length] = slab;
+            slabs = extended;
+            return this;
+        }
+
+        /**
+         * The address plus one of the record with the given ID, or 0 if there is none.
+         */
+        long find(String id, int hash, byte[] idBytes) {
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                long address = addresses.get(slot);
+                if (address == 0 || (hashes[slot] == hash && hasId(address, idBytes))) {
+                    return address;
+                }
+            }
+        }
+
+        /**
+         * The slot holding the ID, or the empty slot it would be stored in.
+         */
+        int slotOf(int hash, byte[] idBytes) {
+            int slot = hash & mask;
+            long address;
+            while ((address = addresses.get(slot)) != 0 && (hashes[slot] != hash || !hasId(address, idBytes))) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        Index resize(int capacity) {
+            if (capacity > MAX_CAPACITY) {
+                throw new IllegalStateException("Order store is full");
+            }
+            Index resized = new Index(capacity, slabs);
+            for (int i = 0; i <= mask; i++) {
+                long address = addresses.get(i);
+                if (address != 0) {
+                    int slot = hashes[i] & resized.mask;
+                    while (resized.addresses.get(slot) != 0) {
+                        slot = (slot + 1) & resized.mask;
+                    }
+                    resized.hashes[slot] = hashes[i];
+                    resized.addresses.lazySet(slot, address);
+                }
+            }
+            return resized;
+        }
+
+        private boolean hasId(long address, byte[] idBytes) {
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            if (slab.getInt(offset) != idBytes.length) {
+                return false;
+            }
+            for (int i = 0; i < idBytes.length; i++) {
+                if (slab.get(offset + RECORD_HEADER_BYTES + i) != idBytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        ByteBuffer order(long address) {
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            int start = offset + RECORD_HEADER_BYTES + slab.getInt(offset);
+            ByteBuffer order = slab.asReadOnlyBuffer();
+            order.limit(start + slab.getInt(offset + 4)).position(start);
+            return order;
+        }
+
+        ByteBuffer record(long address) {
+            ByteBuffer record = slab(address).duplicate();
+            int offset = offset(address);
+            record.limit(offset + recordBytes(address)).position(offset);
+            return record;
+        }
+
+        int recordBytes(long address) {
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            return RECORD_HEADER_BYTES + slab.getInt(offset) + slab.getInt(offset + 4);
+        }
+
+        private ByteBuffer slab(long address) {
+            return slabs[(int) ((address - 1) >>> 32)];
+        }
+
+        private static int offset(long address) {
+            return (int) (address - 1);
+        }
+    }
+}
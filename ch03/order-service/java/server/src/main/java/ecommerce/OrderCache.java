@@ -0,0 +1,337 @@
+package ecommerce;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded read-through cache of the orders of an {@link OrderRepository}, with a W-TinyLFU eviction policy.
+ *
+ * Loaded orders enter an LRU window of 1% of the cache. An order pushed out of the window competes with the least
+ * recently used order of the main space, and the one read more often according to a {@link FrequencySketch} stays.
+ * The main space is a segmented LRU: an order read again while on probation moves to the protected segment, 80% of
+ * the main space, and orders pushed out of the protected segment go back on probation. A scan of orders that are read
+ * once then only passes through the window instead of flushing the orders that are read all the time.
+ *
+ * Lookups never lock. A hit records the access in the policy only if its lock is free, so under contention some
+ * accesses are dropped rather than making readers wait. Concurrent misses for the same ID share one load.
+ * {@link #invalidate} removes an order and discards the loads of it still in flight, so that an order loaded before a
+ * write is never cached after it.
+ */
+public class OrderCache {
+
+    private final OrderRepository repository;
+    private final int windowMaximum;
+    private final int mainMaximum;
+    private final int protectedMaximum;
+    private final ConcurrentMap<String, Node> data;
+    private final ConcurrentMap<String, CompletableFuture<OrderManagementOuterClass.Order>> loading
+            = new ConcurrentHashMap<>();
+    private final Lock policyLock = new ReentrantLock();
+
+    // Guarded by policyLock.
+    private final FrequencySketch sketch;
+    private final AccessQueue window = new AccessQueue();
+    private final AccessQueue probation = new AccessQueue();
+    private final AccessQueue protectedSegment = new AccessQueue();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maximumSize number of orders the cache holds at most
+     */
+    public OrderCache(OrderRepository repository, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Cache must hold at least one order: " + maximumSize);
+        }
+        this.repository = repository;
+        windowMaximum = Math.max(1, maximumSize / 100);
+        mainMaximum = maximumSize - windowMaximum;
+        protectedMaximum = mainMaximum - mainMaximum / 5;
+        data = new ConcurrentHashMap<>(Math.min(maximumSize, 1 << 16));
+        sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Completes with the order with the given ID, or with {@code null} if the repository has no such order. Orders
+     * that are not cached are loaded from the repository, and completing the load adds them.
+     */
+    public CompletableFuture<OrderManagementOuterClass.Order> get(String id) {
+        Node node = data.get(id);
+        if (node != null) {
+            hits.increment();
+            if (policyLock.tryLock()) {
+                try {
+                    onAccess(node);
+                } finally {
+                    policyLock.unlock();
+                }
+            }
+            return CompletableFuture.completedFuture(node.order);
+        }
+        misses.increment();
+        CompletableFuture<OrderManagementOuterClass.Order> load = new CompletableFuture<>();
+        CompletableFuture<OrderManagementOuterClass.Order> inFlight = loading.putIfAbsent(id, load);
+        if (inFlight != null) {
+            coalescedLoads.increment();
+            return inFlight;
+        }
+        // A load that completed since the lookup may have added the order already.
+        node = data.get(id);
+        if (node != null) {
+            loading.remove(id, load);
+            load.complete(node.order);
+            return load;
+        }
+        loads.increment();
+        repository.load(id).whenComplete((order, failure) -> {
+            policyLock.lock();
+            try {
+                int hash = spread(id);
+                sketch.increment(hash);
+                // Not in loading any more if the order was invalidated while it was loaded.
+                if (loading.remove(id, load) && order != null && !data.containsKey(id)) {
+                    add(new Node(id, order, hash));
+                }
+            } finally {
+                policyLock.unlock();
+            }
+            if (failure != null) {
+                loadFailures.increment();
+                load.completeExceptionally(failure);
+            } else {
+                load.complete(order);
+            }
+        });
+        return load;
+    }
+
+    /**
+     * Removes the order with the given ID, to be called once the order has been written to the repository. Loads of
+     * the order that are still in flight complete for the calls waiting on them, but their order is not cached.
+     */
+    public void invalidate(String id) {
+        invalidations.increment();
+        policyLock.lock();
+        try {
+            loading.remove(id);
+            Node node = data.remove(id);
+            if (node != null) {
+                node.queue.remove(node);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Number of cached orders.
+     */
+    public int size() {
+        return data.size();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), loads.sum(), coalescedLoads.sum(), loadFailures.sum(),
+                evictions.sum(), invalidations.sum());
+    }
+
+    private void onAccess(Node node) {
+        if (node.queue == null) {
+            // Evicted or invalidated since it was looked up.
+            return;
+        }
+        sketch.increment(node.hash);
+        if (node.queue == probation) {
+            probation.remove(node);
+            protectedSegment.addLast(node);
+            if (protectedSegment.size > protectedMaximum) {
+                probation.addLast(protectedSegment.removeFirst());
+            }
+        } else {
+            node.queue.moveToBack(node);
+        }
+    }
+
+    private void add(Node node) {
+        data.put(node.id, node);
+        window.addLast(node);
+        while (window.size > windowMaximum) {
+            Node candidate = window.removeFirst();
+            if (probation.size + protectedSegment.size < mainMaximum) {
+                probation.addLast(candidate);
+                continue;
+            }
+            Node victim = probation.first != null ? probation.first : protectedSegment.first;
+            if (victim != null && sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                evict(victim);
+                probation.addLast(candidate);
+            } else {
+                data.remove(candidate.id, candidate);
+                evictions.increment();
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        node.queue.remove(node);
+        data.remove(node.id, node);
+        evictions.increment();
+    }
+
+    /**
+     * String hash codes of similar IDs differ in few bits, so they are spread before they index the sketch.
+     */
+    private static int spread(String id) {
+        int h = id.hashCode() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Counters of a cache since it was created.
+     */
+    public static final class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long loadCount;
+        private final long coalescedLoadCount;
+        private final long loadFailureCount;
+        private final long evictionCount;
+        private final long invalidationCount;
+
+        Stats(long hitCount, long missCount, long loadCount, long coalescedLoadCount, long loadFailureCount,
+              long evictionCount, long invalidationCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadCount = loadCount;
+            this.coalescedLoadCount = coalescedLoadCount;
+            this.loadFailureCount = loadFailureCount;
+            this.evictionCount = evictionCount;
+            this.invalidationCount = invalidationCount;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * Misses that loaded the order from the repository.
+         */
+        public long getLoadCount() {
+            return loadCount;
+        }
+
+        /**
+         * Misses that waited for a load of the same order that was already in flight.
+         */
+        public long getCoalescedLoadCount() {
+            return coalescedLoadCount;
+        }
+
+        public long getLoadFailureCount() {
+            return loadFailureCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public long getInvalidationCount() {
+            return invalidationCount;
+        }
+
+        public double getHitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits %d, misses %d (hit rate %.1f%%), loads %d, coalesced loads %d, "
+                            + "load failures %d, evictions %d, invalidations %d", hitCount, missCount,
+                    100 * getHitRate(), loadCount, coalescedLoadCount, loadFailureCount, evictionCount,
+                    invalidationCount);
+        }
+    }
+
+    private static final class Node {
+        final String id;
+        final OrderManagementOuterClass.Order order;
+        final int hash;
+        // Guarded by policyLock; queue is null once the node has left the cache.
+        AccessQueue queue;
+        Node previous;
+        Node next;
+
+        Node(String id, OrderManagementOuterClass.Order order, int hash) {
+            this.id = id;
+            this.order = order;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Doubly linked list of nodes from the least to the most recently used.
+     */
+    private static final class AccessQueue {
+        Node first;
+        Node last;
+        int size;
+
+        void addLast(Node node) {
+            node.queue = this;
+            node.previous = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+            size++;
+        }
+
+        void remove(Node node) {
+            if (node.previous == null) {
+                first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.queue = null;
+            node.previous = null;
+            node.next = null;
+            size--;
+        }
+
+        Node removeFirst() {
+            Node node = first;
+            remove(node);
+            return node;
+        }
+
+        void moveToBack(Node node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ecommerce;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Inverted n-gram index over order items. Every item is indexed by all of its 1, 2 and 3 character substrings, so a
+ * substring query only has to intersect the posting sets of the query's trigrams instead of scanning every order.
+ *
+ * The index returns candidate order IDs. Callers must check the candidates against the stored order since an
+ * intersection of trigrams can over-match, and a concurrent update may not be visible in the index yet.
+ */
+public class OrderItemIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final ConcurrentMap<String, Set<String>> postings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> gramsByOrder = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes the items of the order, replacing whatever was indexed for the same order ID before.
+     */
+    public void index(OrderManagementOuterClass.Order order) {
+        String orderId = order.getId();
+        Set<String> grams = new HashSet<>();
+        for (String item : order.getItemsList()) {
+            addGrams(item, grams);
+        }
+        // The whole update runs inside compute, so concurrent updates of the same order ID apply one after the other
+        // and the postings always match the grams recorded for the order. Postings is a different map, so updating it
+        // from inside compute is safe.
+        gramsByOrder.compute(orderId, (key, previousGrams) -> {
+            for (String gram : grams) {
+                postings.compute(gram, (postingKey, ids) -> {
+                    if (ids == null) {
+                        ids = ConcurrentHashMap.newKeySet();
+                    }
+                    ids.add(orderId);
+                    return ids;
+                });
+            }
+            if (previousGrams != null) {
+                for (String gram : previousGrams) {
+                    if (!grams.contains(gram)) {
+                        postings.computeIfPresent(gram, (postingKey, ids) -> {
+                            ids.remove(orderId);
+                            return ids.isEmpty() ? null : ids;
+                        });
+                    }
+                }
+            }
+            return grams;
+        });
+    }
+
+    /**
+     * Returns IDs of orders that may have an item containing {@code term}.
+     */
+    public Collection<String> findCandidates(String term) {
+        if (term.isEmpty()) {
+            return gramsByOrder.keySet();
+        }
+        return lookup(term);
+    }
+
+    private Collection<String> lookup(String term) {
+        if (term.length() <= GRAM_LENGTH) {
+            Set<String> ids = postings.get(term);
+            return ids != null ? ids : Collections.emptySet();
+        }
+        List<Set<String>> postingSets = new ArrayList<>();
+        for (int start = 0; start + GRAM_LENGTH <= term.length(); start++) {
+            Set<String> ids = postings.get(term.substring(start, start + GRAM_LENGTH));
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            postingSets.add(ids);
+        }
+        // Drive the intersection from the rarest trigram.
+        postingSets.sort(Comparator.comparingInt(Set::size));
+        List<String> candidates = new ArrayList<>();
+        Set<String> smallest = postingSets.get(0);
+        for (String id : smallest) {
+            boolean inAll = true;
+            for (int i = 1; i < postingSets.size() && inAll; i++) {
+                inAll = postingSets.get(i).contains(id);
+            }
+            if (inAll) {
+                candidates.add(id);
+            }
+        }
+        return candidates;
+    }
+
+    private static void addGrams(String value, Set<String> grams) {
+        for (int start = 0; start < value.length(); start++) {
+            int maxEnd = Math.min(start + GRAM_LENGTH, value.length());
+            for (int end = start + 1; end <= maxEnd; end++) {
+                grams.add(value.substring(start, end));
+            }
+        }
+    }
+}
@@ -1,21 +1,28 @@
 package ecommerce;
 
+import ecommerce.bootstrap.ServerExecutors;
 import io.grpc.Server;
-import io.grpc.ServerBuilder;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class OrderMgtServer {
     private static final Logger logger = Logger.getLogger(OrderMgtServer.class.getName());
 
     private Server server;
+    private NettyTransportConfig transportConfig;
+    private OrderStore orderStore;
 
     private void start() throws IOException {
         /* The port on which the server should run */
         int port = 50051;
-        server = ServerBuilder.forPort(port)
-                .addService(new OrderMgtServiceImpl())
+        transportConfig = NettyTransportConfig.fromSystemProperties();
+        JournalConfig journalConfig = JournalConfig.fromSystemProperties();
+        orderStore = withBackend(journalConfig == null
+                ? newMemoryStore() : JournaledOrderStore.open(journalConfig, newMemoryStore()));
+        server = ServerExecutors.configure(transportConfig.newServerBuilder(port))
+                .addService(new OrderMgtServiceImpl(orderStore).serviceDefinition())
                 .build()
                 .start();
         logger.info("Server started, listening on " + port);
@@ -27,9 +34,48 @@ public class OrderMgtServer {
         }));
     }
 
+    /**
+     * Keeps orders as objects on the heap, also their serialized form with {@code -Dorder.store.memory=serialized}, or
+     * only their serialized form in direct memory with {@code -Dorder.store.memory=offheap}.
+     */
+    private static OrderStore newMemoryStore() {
+        String memory = System.getProperty("order.store.memory", "heap");
+        switch (memory.toLowerCase()) {
+            case "heap":
+                return new ConcurrentOrderStore();
+            case "serialized":
+                return new PreSerializedOrderStore();
+            case "offheap":
+                return new OffHeapOrderStore();
+            default:
+                throw new IllegalArgumentException("Unknown order.store.memory " + memory);
+        }
+    }
+
+    /**
+     * With {@code -Dorder.backend.latencyMicros} the store stands in for a remote backend of that latency, which is
+     * read through a cache of {@code order.cache.maximumSize} (10000) orders.
+     */
+    private static OrderStore withBackend(OrderStore store) {
+        long latencyMicros = Long.getLong("order.backend.latencyMicros", -1);
+        if (latencyMicros < 0) {
+            return store;
+        }
+        OrderRepository repository = new SimulatedOrderRepository(store, latencyMicros);
+        OrderCache cache = new OrderCache(repository, Integer.getInteger("order.cache.maximumSize", 10_000));
+        return new CachingOrderStore(repository, cache);
+    }
+
     private void stop() {
         if (server != null) {
             server.shutdown();
+            try {
+                server.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            transportConfig.shutdown();
+            orderStore.close();
         }
     }
 
@@ -2,11 +2,20 @@ package ecommerce;
 
 import com.google.protobuf.StringValue;
 import com.google.protobuf.StringValueOrBuilder;
+import ecommerce.bootstrap.SerializedResponses;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusException;
 import io.grpc.stub.StreamObserver;
+import org.HdrHistogram.Histogram;
 
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class OrderMgtServiceImpl extends OrderManagementGrpc.OrderManagementImplBase {
@@ -45,62 +54,191 @@ public class OrderMgtServiceImpl extends OrderManagementGrpc.OrderManagementImpl
             .setPrice(300)
             .build();
 
-    private Map<String, OrderManagementOuterClass.Order> orderMap = Stream.of(
-            new AbstractMap.SimpleEntry<>(ord1.getId(), ord1),
-            new AbstractMap.SimpleEntry<>(ord2.getId(), ord2),
-            new AbstractMap.SimpleEntry<>(ord3.getId(), ord3),
-            new AbstractMap.SimpleEntry<>(ord4.getId(), ord4),
-            new AbstractMap.SimpleEntry<>(ord5.getId(), ord5))
-            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-    private Map<String, OrderManagementOuterClass.CombinedShipment> combinedShipmentMap = new HashMap<>();
+    private final OrderStore orderStore;
+    private final OrderItemIndex itemIndex = new OrderItemIndex();
+    private final FlushPolicy flushPolicy;
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shipment-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public static final int BATCH_SIZE = 3;
 
+    public OrderMgtServiceImpl() {
+        this(new ConcurrentOrderStore());
+    }
+
+    public OrderMgtServiceImpl(OrderStore orderStore) {
+        this(orderStore, FlushPolicy.defaultPolicy());
+    }
+
+    public OrderMgtServiceImpl(OrderStore orderStore, FlushPolicy flushPolicy) {
+        this.orderStore = orderStore;
+        this.flushPolicy = flushPolicy;
+        // A store that keeps its orders across restarts only gets the sample orders the first time.
+        orderStore.forEach(itemIndex::index);
+        if (orderStore.size() == 0) {
+            Stream.of(ord1, ord2, ord3, ord4, ord5).forEach(order -> saveOrder(order).join());
+        }
+    }
+
+    /**
+     * Indexes the order only once the store has saved it, so an order the store rejected never turns up in a search.
+     */
+    private CompletableFuture<Void> saveOrder(OrderManagementOuterClass.Order order) {
+        return orderStore.persist(order).thenRun(() -> itemIndex.index(order));
+    }
+
+    /**
+     * Like {@link #saveOrder}, indexes the orders only once the store has saved all of them.
+     */
+    private CompletableFuture<Void> saveOrders(List<OrderManagementOuterClass.Order> orders) {
+        return orderStore.persistAll(orders).thenRun(() -> orders.forEach(itemIndex::index));
+    }
 
     // Unary
     @Override
     public void addOrder(OrderManagementOuterClass.Order request, StreamObserver<StringValue> responseObserver) {
         logger.info("Order Added - ID: " + request.getId() + ", Destination : " + request.getDestination());
-        orderMap.put(request.getId(), request);
-        StringValue id = StringValue.newBuilder().setValue("100500").build();
-        responseObserver.onNext(id);
-        responseObserver.onCompleted();
+        // Acknowledged once the store has persisted the order.
+        saveOrder(request).whenComplete((saved, failure) -> {
+            if (failure != null) {
+                responseObserver.onError(saveFailed(failure));
+                return;
+            }
+            StringValue id = StringValue.newBuilder().setValue("100500").build();
+            responseObserver.onNext(id);
+            responseObserver.onCompleted();
+        });
+    }
+
+    private static StatusException saveFailed(Throwable failure) {
+        logger.log(Level.WARNING, "Saving orders failed", failure);
+        return Status.UNAVAILABLE.withDescription("Orders could not be saved").withCause(failure).asException();
     }
 
     // Unary
     @Override
     public void getOrder(StringValue request, StreamObserver<OrderManagementOuterClass.Order> responseObserver) {
-        OrderManagementOuterClass.Order order = orderMap.get(request.getValue());
+        // Replies once the order is loaded, without holding the executor thread while the store fetches it.
+        orderStore.getAsync(request.getValue()).whenComplete((order, failure) -> {
+            if (failure != null) {
+                logger.log(Level.WARNING, "Loading order " + request.getValue() + " failed", failure);
+                responseObserver.onError(Status.UNAVAILABLE.withDescription("Order could not be loaded")
+                        .withCause(failure).asException());
+            } else if (order != null) {
+                System.out.printf("Order Retrieved : ID - %s", order.getId());
+                responseObserver.onNext(order);
+                responseObserver.onCompleted();
+            } else {
+                logger.info("Order : " + request.getValue() + " - Not found.");
+                responseObserver.onCompleted();
+            }
+        });
+    }
+
+    /**
+     * Answers getOrder from the stored bytes when the store keeps orders serialized.
+     */
+    private void getSerializedOrder(StringValue request, StreamObserver<ByteBuffer> responseObserver) {
+        ByteBuffer order = orderStore.getSerialized(request.getValue());
         if (order != null) {
-            System.out.printf("Order Retrieved : ID - %s", order.getId());
+            logger.fine("Order Retrieved : ID - " + request.getValue());
             responseObserver.onNext(order);
-            responseObserver.onCompleted();
-        } else  {
+        } else {
             logger.info("Order : " + request.getValue() + " - Not found.");
+        }
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * The service bound like {@link #bindService()}, except that getOrder is bound to {@link #getSerializedOrder} when
+     * the store keeps orders serialized, so they are written to the wire as stored instead of being parsed and
+     * serialized again.
+     */
+    public ServerServiceDefinition serviceDefinition() {
+        if (!orderStore.keepsSerializedOrders()) {
+            return bindService();
+        }
+        return SerializedResponses.bindUnary(bindService(), OrderManagementGrpc.getGetOrderMethod(),
+                this::getSerializedOrder);
+    }
+
+    // Unary, many orders at once
+    @Override
+    public void addOrders(OrderManagementOuterClass.OrderBatch request,
+                          StreamObserver<OrderManagementOuterClass.OrderIdBatch> responseObserver) {
+        logger.info("Orders Added - Count: " + request.getOrdersCount());
+        // One pass over the store for the whole batch, acknowledged once all orders are persisted.
+        saveOrders(request.getOrdersList()).whenComplete((saved, failure) -> {
+            if (failure != null) {
+                responseObserver.onError(saveFailed(failure));
+                return;
+            }
+            OrderManagementOuterClass.OrderIdBatch.Builder ids = OrderManagementOuterClass.OrderIdBatch.newBuilder();
+            for (OrderManagementOuterClass.Order order : request.getOrdersList()) {
+                ids.addIds(order.getId());
+            }
+            responseObserver.onNext(ids.build());
             responseObserver.onCompleted();
+        });
+    }
+
+    // Unary, many orders at once
+    @Override
+    public void getOrders(OrderManagementOuterClass.OrderIdBatch request,
+                          StreamObserver<OrderManagementOuterClass.OrderBatch> responseObserver) {
+        List<CompletableFuture<OrderManagementOuterClass.Order>> lookups = new ArrayList<>(request.getIdsCount());
+        for (String id : request.getIdsList()) {
+            lookups.add(orderStore.getAsync(id));
         }
-        // ToDo  Handle errors
-        // responseObserver.onError();
+        // The orders that were found go back in one message, in the order of their IDs.
+        CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])).whenComplete((loaded, failure) -> {
+            if (failure != null) {
+                logger.log(Level.WARNING, "Loading orders failed", failure);
+                responseObserver.onError(Status.UNAVAILABLE.withDescription("Orders could not be loaded")
+                        .withCause(failure).asException());
+                return;
+            }
+            OrderManagementOuterClass.OrderBatch.Builder orders = OrderManagementOuterClass.OrderBatch.newBuilder();
+            for (CompletableFuture<OrderManagementOuterClass.Order> lookup : lookups) {
+                OrderManagementOuterClass.Order order = lookup.join();
+                if (order != null) {
+                    orders.addOrders(order);
+                }
+            }
+            logger.info("Orders Retrieved - " + orders.getOrdersCount() + " of " + request.getIdsCount());
+            responseObserver.onNext(orders.build());
+            responseObserver.onCompleted();
+        });
     }
 
     // Server Streaming
     @Override
     public void searchOrders(StringValue request, StreamObserver<OrderManagementOuterClass.Order> responseObserver) {
 
-        for (Map.Entry<String, OrderManagementOuterClass.Order> orderEntry : orderMap.entrySet()) {
-            OrderManagementOuterClass.Order order = orderEntry.getValue();
-            int itemsCount = order.getItemsCount();
-            for (int index = 0; index < itemsCount; index++) {
-                String item = order.getItems(index);
-                if (item.contains(request.getValue())) {
-                    logger.info("Item found " + item);
-                    responseObserver.onNext(order);
-                    break;
-                }
+        String searchTerm = request.getValue();
+        // Matches are loaded lazily, only as fast as the client reads them, and candidates that don't match complete
+        // with null, which the sender skips.
+        Iterator<CompletableFuture<OrderManagementOuterClass.Order>> matchingOrders =
+                itemIndex.findCandidates(searchTerm).stream()
+                        .map(id -> orderStore.getAsync(id).thenApply(
+                                order -> order != null && hasItemContaining(order, searchTerm) ? order : null))
+                        .iterator();
+        FlowControlledSender.send(responseObserver, matchingOrders);
+    }
+
+    private static boolean hasItemContaining(OrderManagementOuterClass.Order order, String searchTerm) {
+        int itemsCount = order.getItemsCount();
+        for (int index = 0; index < itemsCount; index++) {
+            String item = order.getItems(index);
+            if (item.contains(searchTerm)) {
+                logger.info("Item found " + item);
+                return true;
             }
         }
-        responseObserver.onCompleted();
+        return false;
     }
 
     // Client Streaming
@@ -108,11 +246,13 @@ public class OrderMgtServiceImpl extends OrderManagementGrpc.OrderManagementImpl
     public StreamObserver<OrderManagementOuterClass.Order> updateOrders(StreamObserver<StringValue> responseObserver) {
         return new StreamObserver<OrderManagementOuterClass.Order>() {
             StringBuilder updatedOrderStrBuilder = new StringBuilder().append("Updated Order IDs : ");
+            // Completes once every update of the stream has been saved, or with the first failure.
+            CompletableFuture<Void> allSaved = CompletableFuture.completedFuture(null);
 
             @Override
             public void onNext(OrderManagementOuterClass.Order value) {
                 if (value != null) {
-                    orderMap.put(value.getId(), value);
+                    allSaved = allSaved.thenCombine(saveOrder(value), (previous, saved) -> null);
                     updatedOrderStrBuilder.append(value.getId()).append(", ");
                     logger.info("Order ID : " + value.getId() + " - Updated");
                 }
@@ -127,8 +267,14 @@ public class OrderMgtServiceImpl extends OrderManagementGrpc.OrderManagementImpl
             public void onCompleted() {
                 logger.info("Update orders - Completed");
                 StringValue updatedOrders = StringValue.newBuilder().setValue(updatedOrderStrBuilder.toString()).build();
-                responseObserver.onNext(updatedOrders);
-                responseObserver.onCompleted();
+                allSaved.whenComplete((saved, failure) -> {
+                    if (failure != null) {
+                        responseObserver.onError(saveFailed(failure));
+                        return;
+                    }
+                    responseObserver.onNext(updatedOrders);
+                    responseObserver.onCompleted();
+                });
             }
         };
     }
@@ -139,57 +285,55 @@ public class OrderMgtServiceImpl extends OrderManagementGrpc.OrderManagementImpl
     public StreamObserver<StringValue> processOrders(StreamObserver<OrderManagementOuterClass.CombinedShipment> responseObserver) {
 
         return new StreamObserver<StringValue>() {
-            int batchMarker = 0;
+            // Per-call state, so concurrent streams never see each other's shipments.
+            final ShipmentBatch batch = new ShipmentBatch(flushPolicy, flushScheduler, responseObserver);
+            // Orders are loaded concurrently but added to the batch in the order their IDs arrived. Completes once
+            // every order received so far has been added.
+            CompletableFuture<Void> added = CompletableFuture.completedFuture(null);
+
             @Override
             public void onNext(StringValue value) {
                 logger.info("Order Proc : ID - " + value.getValue());
-                OrderManagementOuterClass.Order currentOrder = orderMap.get(value.getValue());
-                if (currentOrder == null) {
-                    logger.info("No order found. ID - " + value.getValue());
-                    return;
-                }
-                // Processing an order and increment batch marker to
-                batchMarker++;
-                String orderDestination = currentOrder.getDestination();
-                OrderManagementOuterClass.CombinedShipment existingShipment = combinedShipmentMap.get(orderDestination);
-
-                if (existingShipment != null) {
-                    existingShipment = OrderManagementOuterClass.CombinedShipment.newBuilder(existingShipment).addOrdersList(currentOrder).build();
-                    combinedShipmentMap.put(orderDestination, existingShipment);
-                } else {
-                    OrderManagementOuterClass.CombinedShipment shipment = OrderManagementOuterClass.CombinedShipment.newBuilder().build();
-                    shipment = shipment.newBuilderForType()
-                            .addOrdersList(currentOrder)
-                            .setId("CMB-" + new Random().nextInt(1000)+ ":" + currentOrder.getDestination())
-                            .setStatus("Processed!")
-                            .build();
-                    combinedShipmentMap.put(currentOrder.getDestination(), shipment);
-                }
-
-                if (batchMarker == BATCH_SIZE) {
-                    // Order batch completed. Flush all existing shipments.
-                    for (Map.Entry<String, OrderManagementOuterClass.CombinedShipment> entry : combinedShipmentMap.entrySet()) {
-                        responseObserver.onNext(entry.getValue());
+                CompletableFuture<OrderManagementOuterClass.Order> lookup = orderStore.getAsync(value.getValue())
+                        .exceptionally(failure -> {
+                            logger.log(Level.WARNING, "Loading order " + value.getValue() + " failed", failure);
+                            return null;
+                        });
+                added = added.thenCombine(lookup, (previous, currentOrder) -> {
+                    if (currentOrder == null) {
+                        logger.info("No order found. ID - " + value.getValue());
+                    } else {
+                        // Flushes once the batch is full, too large or too old.
+                        batch.add(currentOrder);
                     }
-                    // Reset batch marker
-                    batchMarker = 0;
-                    combinedShipmentMap.clear();
-                }
+                    return null;
+                });
             }
 
             @Override
             public void onError(Throwable t) {
-
+                batch.cancel();
             }
 
             @Override
             public void onCompleted() {
-                for (Map.Entry<String, OrderManagementOuterClass.CombinedShipment> entry : combinedShipmentMap.entrySet()) {
-                    responseObserver.onNext(entry.getValue());
-                }
-                responseObserver.onCompleted();
+                added.thenRun(() -> {
+                    batch.close();
+                    logBatchStats(batch);
+                    responseObserver.onCompleted();
+                });
             }
 
         };
     }
+
+    private static void logBatchStats(ShipmentBatch batch) {
+        Histogram batchSizes = batch.getBatchSizes();
+        Histogram flushLatency = batch.getFlushLatencyMicros();
+        logger.info("Process orders - Completed. Flushes : " + batchSizes.getTotalCount()
+                + ", batch size p50/p99/max : " + batchSizes.getValueAtPercentile(50)
+                + "/" + batchSizes.getValueAtPercentile(99) + "/" + batchSizes.getMaxValue()
+                + ", flush latency us p50/p99/max : " + flushLatency.getValueAtPercentile(50)
+                + "/" + flushLatency.getValueAtPercentile(99) + "/" + flushLatency.getMaxValue());
+    }
 }
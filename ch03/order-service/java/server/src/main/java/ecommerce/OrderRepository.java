@@ -0,0 +1,46 @@
+package ecommerce;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Backend that owns the orders, e.g. a remote database. Reads and writes take a round trip, so they complete
+ * asynchronously; {@link CachingOrderStore} puts an {@link OrderCache} in front of the reads.
+ * Implementations must be safe to call from concurrent gRPC executor threads.
+ */
+public interface OrderRepository extends AutoCloseable {
+
+    /**
+     * Completes with the order with the given ID, or with {@code null} if there's no such order.
+     */
+    CompletableFuture<OrderManagementOuterClass.Order> load(String id);
+
+    /**
+     * Adds the order or replaces an existing order with the same ID, and completes once the backend has stored it.
+     */
+    CompletableFuture<Void> save(OrderManagementOuterClass.Order order);
+
+    /**
+     * Saves the orders like {@link #save}, and completes once the backend has stored all of them. Backends that can
+     * write many orders in one request override it to do so.
+     */
+    default CompletableFuture<Void> saveAll(List<OrderManagementOuterClass.Order> orders) {
+        CompletableFuture<?>[] saved = new CompletableFuture<?>[orders.size()];
+        for (int i = 0; i < saved.length; i++) {
+            saved[i] = save(orders.get(i));
+        }
+        return CompletableFuture.allOf(saved);
+    }
+
+    /**
+     * Visits every order. Backends scan all of their orders for this, so it is only meant for startup.
+     */
+    void forEach(Consumer<OrderManagementOuterClass.Order> action);
+
+    int size();
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,80 @@
+package ecommerce;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Storage abstraction for orders held by {@link OrderMgtServiceImpl}.
+ * Implementations must be safe to call from concurrent gRPC executor threads.
+ */
+public interface OrderStore extends AutoCloseable {
+
+    /**
+     * Returns the order with the given ID or {@code null} if there's no such order.
+     */
+    OrderManagementOuterClass.Order get(String id);
+
+    /**
+     * Completes with the order with the given ID or with {@code null} if there's no such order. Stores that have to
+     * fetch the order from elsewhere complete once it arrives instead of blocking the caller.
+     */
+    default CompletableFuture<OrderManagementOuterClass.Order> getAsync(String id) {
+        return CompletableFuture.completedFuture(get(id));
+    }
+
+    /**
+     * Returns the serialized order with the given ID or {@code null} if there's no such order. The buffer may share
+     * the store's bytes and must not be modified.
+     */
+    default ByteBuffer getSerialized(String id) {
+        OrderManagementOuterClass.Order order = get(id);
+        return order == null ? null : ByteBuffer.wrap(order.toByteArray());
+    }
+
+    /**
+     * Whether the store keeps orders serialized, so that {@link #getSerialized} is cheaper than {@link #get}.
+     */
+    default boolean keepsSerializedOrders() {
+        return false;
+    }
+
+    /**
+     * Adds the order or replaces an existing order with the same ID.
+     */
+    void put(OrderManagementOuterClass.Order order);
+
+    /**
+     * Adds or replaces the order like {@link #put}, and completes once the order would survive a restart. Stores
+     * that only keep orders in memory complete right away. The futures of one store complete in the order the orders
+     * were put.
+     */
+    default CompletableFuture<Void> persist(OrderManagementOuterClass.Order order) {
+        put(order);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Adds or replaces the orders like {@link #persist}, and completes once all of them would survive a restart. Stores
+     * that can write many orders at once, e.g. with one sync, override it to do so.
+     */
+    default CompletableFuture<Void> persistAll(List<OrderManagementOuterClass.Order> orders) {
+        CompletableFuture<?>[] saved = new CompletableFuture<?>[orders.size()];
+        for (int i = 0; i < saved.length; i++) {
+            saved[i] = persist(orders.get(i));
+        }
+        return CompletableFuture.allOf(saved);
+    }
+
+    /**
+     * Visits every stored order. Orders added or replaced during the traversal may or may not be visited.
+     */
+    void forEach(Consumer<OrderManagementOuterClass.Order> action);
+
+    int size();
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,69 @@
+package ecommerce;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * {@link OrderStore} that keeps every order on the heap together with its serialized form, which is encoded once when
+ * the order is put. {@code getOrder} then sends the stored bytes, so reading an order costs no serialization however
+ * often it is read, at the price of keeping each order twice.
+ */
+public class PreSerializedOrderStore implements OrderStore {
+
+    private final ConcurrentMap<String, StoredOrder> orders;
+
+    public PreSerializedOrderStore() {
+        this(16);
+    }
+
+    public PreSerializedOrderStore(int initialCapacity) {
+        this.orders = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    @Override
+    public OrderManagementOuterClass.Order get(String id) {
+        StoredOrder stored = orders.get(id);
+        return stored == null ? null : stored.order;
+    }
+
+    /**
+     * Returns the stored bytes. They are not copied, so the marshaller can write the backing array in one go.
+     */
+    @Override
+    public ByteBuffer getSerialized(String id) {
+        StoredOrder stored = orders.get(id);
+        return stored == null ? null : ByteBuffer.wrap(stored.serialized);
+    }
+
+    @Override
+    public boolean keepsSerializedOrders() {
+        return true;
+    }
+
+    @Override
+    public void put(OrderManagementOuterClass.Order order) {
+        orders.put(order.getId(), new StoredOrder(order, order.toByteArray()));
+    }
+
+    @Override
+    public void forEach(Consumer<OrderManagementOuterClass.Order> action) {
+        orders.values().forEach(stored -> action.accept(stored.order));
+    }
+
+    @Override
+    public int size() {
+        return orders.size();
+    }
+
+    private static final class StoredOrder {
+        final OrderManagementOuterClass.Order order;
+        final byte[] serialized;
+
+        StoredOrder(OrderManagementOuterClass.Order order, byte[] serialized) {
+            this.order = order;
+            this.serialized = serialized;
+        }
+    }
+}
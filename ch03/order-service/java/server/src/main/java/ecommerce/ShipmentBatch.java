@@ -0,0 +1,152 @@
+package ecommerce;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups the orders of a single {@code processOrders} stream into combined shipments by destination.
+ * Each destination keeps one mutable {@link OrderManagementOuterClass.CombinedShipment.Builder} that is only built
+ * when the batch is flushed, and the builders are reused for the following batches of the same stream.
+ *
+ * Flushes follow the stream's {@link FlushPolicy}. The time-based flush runs on the shared scheduler, so all methods
+ * synchronize on the batch, which is only contended by that timer.
+ */
+class ShipmentBatch {
+
+    private static final double INTERVAL_SMOOTHING = 0.2;
+
+    private final Map<String, OrderManagementOuterClass.CombinedShipment.Builder> shipmentsByDestination =
+            new LinkedHashMap<>();
+    private final FlushPolicy policy;
+    private final ScheduledExecutorService scheduler;
+    private final StreamObserver<OrderManagementOuterClass.CombinedShipment> responseObserver;
+
+    // Per-stream histograms: orders per flush and time from the first pending order to the flush in microseconds.
+    private final Histogram batchSizes = new Histogram(3);
+    private final Histogram flushLatencyMicros = new Histogram(3);
+
+    private int batchSize;
+    private int orderCount;
+    private long byteCount;
+    private long firstOrderNanos;
+    private long lastArrivalNanos;
+    private double inboundIntervalNanos;
+    private ScheduledFuture<?> scheduledFlush;
+    private long flushCount;
+    private boolean closed;
+
+    ShipmentBatch(FlushPolicy policy, ScheduledExecutorService scheduler,
+                  StreamObserver<OrderManagementOuterClass.CombinedShipment> responseObserver) {
+        this.policy = policy;
+        this.scheduler = scheduler;
+        this.responseObserver = responseObserver;
+        this.batchSize = policy.getInitialBatchSize();
+    }
+
+    synchronized void add(OrderManagementOuterClass.Order order) {
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (lastArrivalNanos != 0) {
+            long interval = now - lastArrivalNanos;
+            inboundIntervalNanos = inboundIntervalNanos == 0 ? interval
+                    : INTERVAL_SMOOTHING * interval + (1 - INTERVAL_SMOOTHING) * inboundIntervalNanos;
+        }
+        lastArrivalNanos = now;
+
+        String destination = order.getDestination();
+        OrderManagementOuterClass.CombinedShipment.Builder shipment = shipmentsByDestination.get(destination);
+        if (shipment == null) {
+            shipment = OrderManagementOuterClass.CombinedShipment.newBuilder();
+            shipmentsByDestination.put(destination, shipment);
+        }
+        if (shipment.getOrdersListCount() == 0) {
+            shipment.setId("CMB-" + ThreadLocalRandom.current().nextInt(1000) + ":" + destination)
+                    .setStatus("Processed!");
+        }
+        shipment.addOrdersList(order);
+        if (orderCount == 0) {
+            firstOrderNanos = now;
+            long batchNumber = flushCount;
+            scheduledFlush = scheduler.schedule(() -> flushOnTimeout(batchNumber),
+                    policy.getMaxDelayMillis(), TimeUnit.MILLISECONDS);
+        }
+        orderCount++;
+        byteCount += order.getSerializedSize();
+
+        if (orderCount >= batchSize || byteCount >= policy.getMaxBytes()) {
+            flush();
+        }
+    }
+
+    /**
+     * Flushes the remaining shipments. No more orders are accepted afterwards.
+     */
+    synchronized void close() {
+        flush();
+        closed = true;
+    }
+
+    /**
+     * Drops the pending shipments, e.g. when the call failed.
+     */
+    synchronized void cancel() {
+        cancelScheduledFlush();
+        closed = true;
+    }
+
+    synchronized Histogram getBatchSizes() {
+        return batchSizes.copy();
+    }
+
+    synchronized Histogram getFlushLatencyMicros() {
+        return flushLatencyMicros.copy();
+    }
+
+    private synchronized void flushOnTimeout(long batchNumber) {
+        // The timer may fire while a size-triggered flush of the same batch holds the lock.
+        if (!closed && batchNumber == flushCount) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        cancelScheduledFlush();
+        if (orderCount == 0) {
+            return;
+        }
+        for (OrderManagementOuterClass.CombinedShipment.Builder shipment : shipmentsByDestination.values()) {
+            if (shipment.getOrdersListCount() > 0) {
+                responseObserver.onNext(shipment.build());
+                shipment.clearOrdersList();
+            }
+        }
+        batchSizes.recordValue(orderCount);
+        flushLatencyMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - firstOrderNanos));
+        batchSize = policy.nextBatchSize(batchSize, inboundIntervalNanos, isOutboundReady());
+        orderCount = 0;
+        byteCount = 0;
+        flushCount++;
+    }
+
+    private boolean isOutboundReady() {
+        return !(responseObserver instanceof ServerCallStreamObserver)
+                || ((ServerCallStreamObserver<?>) responseObserver).isReady();
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ecommerce;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Local stand-in for a slow {@link OrderRepository}. Orders are kept in an {@link OrderStore}, and every load and save
+ * completes after a fixed latency, as if it had made a round trip to a remote database.
+ *
+ * The futures complete on a single scheduler thread, so their callbacks should be short, and saves complete in the
+ * order they were made.
+ */
+public class SimulatedOrderRepository implements OrderRepository {
+
+    private final OrderStore orders;
+    private final long latencyMicros;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-repository");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param orders        where the orders are kept, closed with the repository
+     * @param latencyMicros time each load and save takes to complete
+     */
+    public SimulatedOrderRepository(OrderStore orders, long latencyMicros) {
+        if (latencyMicros < 0) {
+            throw new IllegalArgumentException("Negative latency: " + latencyMicros);
+        }
+        this.orders = orders;
+        this.latencyMicros = latencyMicros;
+    }
+
+    @Override
+    public CompletableFuture<OrderManagementOuterClass.Order> load(String id) {
+        CompletableFuture<OrderManagementOuterClass.Order> loaded = new CompletableFuture<>();
+        scheduler.schedule(() -> loaded.complete(orders.get(id)), latencyMicros, TimeUnit.MICROSECONDS);
+        return loaded;
+    }
+
+    @Override
+    public CompletableFuture<Void> save(OrderManagementOuterClass.Order order) {
+        CompletableFuture<Void> saved = new CompletableFuture<>();
+        scheduler.schedule(() -> complete(saved, orders.persist(order)), latencyMicros, TimeUnit.MICROSECONDS);
+        return saved;
+    }
+
+    /**
+     * Saves the orders in one round trip.
+     */
+    @Override
+    public CompletableFuture<Void> saveAll(List<OrderManagementOuterClass.Order> batch) {
+        CompletableFuture<Void> saved = new CompletableFuture<>();
+        scheduler.schedule(() -> complete(saved, orders.persistAll(batch)), latencyMicros, TimeUnit.MICROSECONDS);
+        return saved;
+    }
+
+    private static void complete(CompletableFuture<Void> saved, CompletableFuture<Void> persisted) {
+        persisted.whenComplete((result, failure) -> {
+            if (failure != null) {
+                saved.completeExceptionally(failure);
+            } else {
+                saved.complete(null);
+            }
+        });
+    }
+
+    @Override
+    public void forEach(Consumer<OrderManagementOuterClass.Order> action) {
+        orders.forEach(action);
+    }
+
+    @Override
+    public int size() {
+        return orders.size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        orders.close();
+    }
+}
@@ -0,0 +1,48 @@
+package ecommerce;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the work the server skipped because the caller's deadline could not be met or the call was cancelled.
+ */
+public class DeadlineMetrics {
+
+    private final LongAdder rejectedOnArrival = new LongAdder();
+    private final LongAdder abandonedInFlight = new LongAdder();
+    private final LongAdder workMillisAvoided = new LongAdder();
+
+    /**
+     * The call arrived with less time left than the work takes, so the work was never started.
+     */
+    void recordRejectedOnArrival(long workMillis) {
+        rejectedOnArrival.increment();
+        workMillisAvoided.add(workMillis);
+    }
+
+    /**
+     * The deadline expired or the call was cancelled while the work was pending.
+     */
+    void recordAbandonedInFlight(long remainingWorkMillis) {
+        abandonedInFlight.increment();
+        workMillisAvoided.add(remainingWorkMillis);
+    }
+
+    public long getRejectedOnArrival() {
+        return rejectedOnArrival.sum();
+    }
+
+    public long getAbandonedInFlight() {
+        return abandonedInFlight.sum();
+    }
+
+    public long getWorkMillisAvoided() {
+        return workMillisAvoided.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Rejected on arrival : " + getRejectedOnArrival()
+                + ", Abandoned in flight : " + getAbandonedInFlight()
+                + ", Work avoided : " + getWorkMillisAvoided() + "ms";
+    }
+}
@@ -1,12 +1,18 @@
 package ecommerce;
 
 import com.google.protobuf.StringValue;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 
 import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -53,30 +59,75 @@ public class OrderMgtServiceImpl extends OrderManagementGrpc.OrderManagementImpl
             new AbstractMap.SimpleEntry<>(ord3.getId(), ord3),
             new AbstractMap.SimpleEntry<>(ord4.getId(), ord4),
             new AbstractMap.SimpleEntry<>(ord5.getId(), ord5))
-            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            .collect(Collectors.toConcurrentMap(Map.Entry::getKey, Map.Entry::getValue));
 
     private Map<String, OrderManagementOuterClass.CombinedShipment> combinedShipmentMap = new HashMap<>();
 
     private static final int BATCH_SIZE = 3;
 
+    // Simulated processing time of an order.
+    private static final long ADD_ORDER_PROCESSING_MILLIS = 5000;
+
+    // Calls arriving with less time than this left are rejected without starting the work. Longer calls are accepted
+    // and their work is dropped when the deadline expires, so the chapter's 1 s client still reaches the server.
+    private static final long MIN_REMAINING_MILLIS = Long.getLong("order.deadline.minRemainingMillis", 500);
+
+    private final ScheduledThreadPoolExecutor processingScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "order-processing");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DeadlineMetrics deadlineMetrics = new DeadlineMetrics();
+
+    public OrderMgtServiceImpl() {
+        // Abandoned orders leave the scheduler's queue right away instead of when their delay would have passed.
+        processingScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    public DeadlineMetrics getDeadlineMetrics() {
+        return deadlineMetrics;
+    }
+
 
     // Unary
     @Override
     public void addOrder(OrderManagementOuterClass.Order request, StreamObserver<StringValue> responseObserver) {
         logger.info("Order Added - ID: " + request.getId() + ", Destination : " + request.getDestination());
 
-        long sleepingDuration = 5000;
-        logger.info("Sleeping for " + sleepingDuration + "ms");
-
-        try {
-            Thread.sleep(sleepingDuration);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        Context context = Context.current();
+        Deadline deadline = context.getDeadline();
+        if (deadline != null && deadline.timeRemaining(TimeUnit.MILLISECONDS) < MIN_REMAINING_MILLIS) {
+            // The client is about to give up, so don't start the work at all.
+            deadlineMetrics.recordRejectedOnArrival(ADD_ORDER_PROCESSING_MILLIS);
+            logger.info("Order : " + request.getId() + " - Deadline too short, rejected. " + deadlineMetrics);
+            responseObserver.onError(Status.DEADLINE_EXCEEDED
+                    .withDescription("Less than " + MIN_REMAINING_MILLIS + "ms left to process the order")
+                    .asRuntimeException());
+            return;
         }
-        orderMap.put(request.getId(), request);
-        StringValue id = StringValue.newBuilder().setValue("100500").build();
-        responseObserver.onNext(id);
-        responseObserver.onCompleted();
+
+        // Finish the order on the scheduler instead of sleeping on the request thread.
+        logger.info("Processing for " + ADD_ORDER_PROCESSING_MILLIS + "ms");
+        long startNanos = System.nanoTime();
+        ScheduledFuture<?> processing = processingScheduler.schedule(() -> {
+            if (context.isCancelled()) {
+                return;
+            }
+            orderMap.put(request.getId(), request);
+            StringValue id = StringValue.newBuilder().setValue("100500").build();
+            responseObserver.onNext(id);
+            responseObserver.onCompleted();
+        }, ADD_ORDER_PROCESSING_MILLIS, TimeUnit.MILLISECONDS);
+
+        // The server context is cancelled when the deadline expires or the client cancels the call.
+        context.addListener(cancelledContext -> {
+            if (processing.cancel(false)) {
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                deadlineMetrics.recordAbandonedInFlight(Math.max(0, ADD_ORDER_PROCESSING_MILLIS - elapsedMillis));
+                logger.info("Order : " + request.getId() + " - Abandoned, call is no longer active. " + deadlineMetrics);
+            }
+        }, Runnable::run);
     }
 
     // Unary
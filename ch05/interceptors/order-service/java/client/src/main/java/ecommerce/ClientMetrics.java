@@ -0,0 +1,142 @@
+package ecommerce;
+
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-method client-observed call metrics, recorded by {@link OrderClientInterceptor} and
+ * {@link HedgingClientInterceptor}. Recording is lock-free; {@link #report()} formats the metrics off the call path.
+ */
+public class ClientMetrics {
+
+    private static final Status.Code[] STATUS_CODES = Status.Code.values();
+    // Recent latency is summarised at most this often, and only once it has enough samples to be meaningful.
+    private static final long RECENT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MIN_RECENT_SAMPLES = 20;
+
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    public MethodMetrics forMethod(String fullMethodName) {
+        MethodMetrics metrics = methods.get(fullMethodName);
+        if (metrics == null) {
+            metrics = methods.computeIfAbsent(fullMethodName, name -> new MethodMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Formats the counters and the latency distribution since the previous report.
+     */
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder("Client metrics");
+        methods.forEach((method, metrics) -> metrics.appendTo(report.append('\n').append(method)));
+        return report.toString();
+    }
+
+    public static final class MethodMetrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder[] statusCounts = new LongAdder[STATUS_CODES.length];
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder budgetExhausted = new LongAdder();
+        private final Recorder latencyMicros = new Recorder(3);
+        private final Recorder recentLatencyMicros = new Recorder(3);
+
+        private volatile long recentP95Micros = -1;
+        private volatile long recentWindowStart = System.nanoTime();
+        private final Histogram recentWindow = new Histogram(3);
+
+        private MethodMetrics() {
+            for (int i = 0; i < statusCounts.length; i++) {
+                statusCounts[i] = new LongAdder();
+            }
+        }
+
+        void onCallFinished(Status.Code code, long latencyNanos) {
+            calls.increment();
+            statusCounts[code.ordinal()].increment();
+            long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+            latencyMicros.recordValue(micros);
+            recentLatencyMicros.recordValue(micros);
+        }
+
+        void onHedge() {
+            hedges.increment();
+        }
+
+        void onHedgeWin() {
+            hedgeWins.increment();
+        }
+
+        void onRetry() {
+            retries.increment();
+        }
+
+        void onBudgetExhausted() {
+            budgetExhausted.increment();
+        }
+
+        /**
+         * The 95th percentile of recently observed latency, or -1 until enough calls have completed.
+         */
+        public long getRecentP95Micros() {
+            long now = System.nanoTime();
+            if (now - recentWindowStart > RECENT_WINDOW_NANOS) {
+                refreshRecentP95(now);
+            }
+            return recentP95Micros;
+        }
+
+        private synchronized void refreshRecentP95(long now) {
+            if (now - recentWindowStart <= RECENT_WINDOW_NANOS) {
+                return;
+            }
+            recentWindow.add(recentLatencyMicros.getIntervalHistogram());
+            // With too few samples, keep collecting into the same window.
+            if (recentWindow.getTotalCount() >= MIN_RECENT_SAMPLES) {
+                recentP95Micros = recentWindow.getValueAtPercentile(95);
+                recentWindow.reset();
+            }
+            recentWindowStart = now;
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getHedges() {
+            return hedges.sum();
+        }
+
+        public long getHedgeWins() {
+            return hedgeWins.sum();
+        }
+
+        private void appendTo(StringBuilder report) {
+            report.append(" : calls ").append(calls.sum());
+            for (Status.Code code : STATUS_CODES) {
+                long count = statusCounts[code.ordinal()].sum();
+                if (count > 0) {
+                    report.append(", ").append(code).append(' ').append(count);
+                }
+            }
+            report.append(", hedges ").append(hedges.sum())
+                    .append(" (won ").append(hedgeWins.sum()).append(')')
+                    .append(", retries ").append(retries.sum())
+                    .append(", retry budget exhausted ").append(budgetExhausted.sum());
+            Histogram latency = latencyMicros.getIntervalHistogram();
+            if (latency.getTotalCount() > 0) {
+                report.append(String.format("%n    latency us : p50 %d, p95 %d, p99 %d, max %d",
+                        latency.getValueAtPercentile(50), latency.getValueAtPercentile(95),
+                        latency.getValueAtPercentile(99), latency.getMaxValue()));
+            }
+        }
+    }
+}
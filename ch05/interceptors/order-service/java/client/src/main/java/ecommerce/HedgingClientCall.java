@@ -0,0 +1,337 @@
+package ecommerce;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A unary call made of one or more attempts, see {@link HedgingClientInterceptor}. Responses of each attempt are held
+ * back until one attempt commits, then only that attempt's headers, message and status reach the caller's listener.
+ * Each attempt calls back on its own serializing executor, so the callbacks for the caller's listener are queued and
+ * run one at a time, in order, by whichever attempt's thread queued them first. Nothing reaches the listener after
+ * {@code onClose}, which also holds for the {@code CANCELLED} status after {@link #cancel}.
+ */
+public class HedgingClientCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+
+    private final MethodDescriptor<ReqT, RespT> method;
+    private final CallOptions callOptions;
+    private final Channel next;
+    private final HedgingClientInterceptor policy;
+    private final ClientMetrics.MethodMetrics metrics;
+
+    private final Object lock = new Object();
+    // Guarded by lock
+    private final List<Attempt> attempts = new ArrayList<>(2);
+    private Listener<RespT> listener;
+    private Metadata headers;
+    private ReqT message;
+    private int requested;
+    private boolean halfClosed;
+    private boolean committed;
+    private boolean cancelled;
+    private String cancelMessage;
+    private Throwable cancelCause;
+    private ScheduledFuture<?> hedgeTimer;
+
+    private final Queue<Runnable> callbacks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    // Only read and written by queued callbacks, which never run concurrently.
+    private boolean listenerClosed;
+
+    HedgingClientCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next,
+                      HedgingClientInterceptor policy) {
+        this.method = method;
+        this.callOptions = callOptions;
+        this.next = next;
+        this.policy = policy;
+        this.metrics = policy.metricsFor(method);
+    }
+
+    @Override
+    public void start(Listener<RespT> responseListener, Metadata headers) {
+        synchronized (lock) {
+            this.listener = responseListener;
+            this.headers = headers;
+        }
+        startAttempt(false);
+    }
+
+    @Override
+    public void request(int numMessages) {
+        for (Attempt attempt : update(() -> requested += numMessages)) {
+            attempt.call.request(numMessages);
+        }
+    }
+
+    @Override
+    public void sendMessage(ReqT message) {
+        for (Attempt attempt : update(() -> this.message = message)) {
+            attempt.call.sendMessage(message);
+        }
+    }
+
+    @Override
+    public void halfClose() {
+        for (Attempt attempt : update(() -> halfClosed = true)) {
+            attempt.call.halfClose();
+        }
+        scheduleHedge();
+    }
+
+    /**
+     * Cancels the started attempts. The first of them to close commits the call, so the caller's listener is closed
+     * from that attempt's callback rather than on the cancelling thread. An attempt started later is cancelled as soon
+     * as it has started.
+     */
+    @Override
+    public void cancel(String message, Throwable cause) {
+        List<Attempt> toCancel = new ArrayList<>();
+        synchronized (lock) {
+            if (committed || cancelled) {
+                return;
+            }
+            cancelled = true;
+            cancelMessage = message;
+            cancelCause = cause;
+            cancelHedgeTimer();
+            for (Attempt attempt : attempts) {
+                if (attempt.started) {
+                    toCancel.add(attempt);
+                }
+            }
+        }
+        for (Attempt attempt : toCancel) {
+            attempt.call.cancel(message, cause);
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        synchronized (lock) {
+            return !attempts.isEmpty() && attempts.get(0).call.isReady();
+        }
+    }
+
+    /**
+     * Records a call operation for attempts started later and returns the attempts started so far.
+     */
+    private List<Attempt> update(Runnable operation) {
+        synchronized (lock) {
+            operation.run();
+            return new ArrayList<>(attempts);
+        }
+    }
+
+    private void startAttempt(boolean hedge) {
+        Attempt attempt = new Attempt(next.newCall(method, callOptions), hedge);
+        Metadata attemptHeaders = new Metadata();
+        int attemptRequested;
+        ReqT attemptMessage;
+        boolean attemptHalfClosed;
+        synchronized (lock) {
+            if (committed) {
+                return;
+            }
+            attempts.add(attempt);
+            attemptHeaders.merge(headers);
+            attemptRequested = requested;
+            attemptMessage = message;
+            attemptHalfClosed = halfClosed;
+        }
+        // Operations after this replay reach the attempt through the attempts list.
+        attempt.call.start(attempt, attemptHeaders);
+        if (attemptRequested > 0) {
+            attempt.call.request(attemptRequested);
+        }
+        if (attemptMessage != null) {
+            attempt.call.sendMessage(attemptMessage);
+        }
+        if (attemptHalfClosed) {
+            attempt.call.halfClose();
+        }
+        boolean cancelNow;
+        String message;
+        Throwable cause;
+        synchronized (lock) {
+            // From here on cancel() cancels the attempt itself.
+            attempt.started = true;
+            cancelNow = cancelled;
+            message = cancelMessage;
+            cause = cancelCause;
+        }
+        if (cancelNow) {
+            attempt.call.cancel(message, cause);
+        }
+    }
+
+    private void scheduleHedge() {
+        synchronized (lock) {
+            if (committed || cancelled || attempts.size() >= policy.getMaxAttempts()) {
+                return;
+            }
+            hedgeTimer = policy.getScheduler().schedule(this::hedge, policy.hedgeDelayNanos(method),
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void hedge() {
+        synchronized (lock) {
+            if (committed || cancelled || attempts.size() >= policy.getMaxAttempts()) {
+                return;
+            }
+            if (!policy.getRetryBudget().tryWithdraw()) {
+                metrics.onBudgetExhausted();
+                return;
+            }
+        }
+        metrics.onHedge();
+        startAttempt(true);
+        scheduleHedge();
+    }
+
+    private void cancelHedgeTimer() {
+        if (hedgeTimer != null) {
+            hedgeTimer.cancel(false);
+        }
+    }
+
+    private void onAttemptClosed(Attempt attempt, Status status, Metadata trailers) {
+        List<Attempt> losers = new ArrayList<>();
+        Listener<RespT> winnerListener;
+        boolean hedgeWon;
+        boolean retry = false;
+        synchronized (lock) {
+            if (committed) {
+                return;
+            }
+            attempt.closed = true;
+            boolean othersPending = attempts.stream().anyMatch(other -> !other.closed);
+            // A cancelled call commits with whichever attempt closes first, normally with CANCELLED.
+            if (status.getCode() == Status.Code.UNAVAILABLE && !cancelled) {
+                if (othersPending) {
+                    // Another attempt may still succeed.
+                    return;
+                }
+                if (attempts.size() < policy.getMaxAttempts()) {
+                    if (policy.getRetryBudget().tryWithdraw()) {
+                        retry = true;
+                    } else {
+                        metrics.onBudgetExhausted();
+                    }
+                }
+            }
+            if (!retry) {
+                committed = true;
+                cancelHedgeTimer();
+                for (Attempt other : attempts) {
+                    if (!other.closed) {
+                        losers.add(other);
+                    }
+                }
+            }
+            winnerListener = listener;
+            hedgeWon = attempt.hedge;
+        }
+        if (retry) {
+            metrics.onRetry();
+            startAttempt(false);
+            return;
+        }
+        for (Attempt loser : losers) {
+            loser.call.cancel("Another hedged attempt completed first", null);
+        }
+        if (hedgeWon) {
+            metrics.onHedgeWin();
+        }
+        deliver(() -> {
+            if (attempt.responseHeaders != null) {
+                winnerListener.onHeaders(attempt.responseHeaders);
+            }
+            for (RespT response : attempt.responses) {
+                winnerListener.onMessage(response);
+            }
+            listenerClosed = true;
+            winnerListener.onClose(status, trailers);
+        });
+    }
+
+    /**
+     * Runs the listener callback after the ones queued before it, and never concurrently with another one.
+     */
+    private void deliver(Runnable callback) {
+        callbacks.add(callback);
+        while (delivering.compareAndSet(false, true)) {
+            try {
+                Runnable next;
+                while ((next = callbacks.poll()) != null) {
+                    next.run();
+                }
+            } finally {
+                delivering.set(false);
+            }
+            // A callback queued after the last poll but before the flag was cleared is run by the next round.
+            if (callbacks.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private final class Attempt extends ClientCall.Listener<RespT> {
+        private final ClientCall<ReqT, RespT> call;
+        private final boolean hedge;
+        private final List<RespT> responses = new ArrayList<>(1);
+        private volatile Metadata responseHeaders;
+        // Guarded by lock
+        private boolean started;
+        private boolean closed;
+
+        Attempt(ClientCall<ReqT, RespT> call, boolean hedge) {
+            this.call = call;
+            this.hedge = hedge;
+        }
+
+        @Override
+        public void onHeaders(Metadata headers) {
+            responseHeaders = headers;
+        }
+
+        @Override
+        public void onMessage(RespT message) {
+            synchronized (lock) {
+                responses.add(message);
+            }
+        }
+
+        @Override
+        public void onClose(Status status, Metadata trailers) {
+            onAttemptClosed(this, status, trailers);
+        }
+
+        @Override
+        public void onReady() {
+            Listener<RespT> readyListener;
+            synchronized (lock) {
+                // Only the first attempt, which isReady() asks too, tells the caller that it can send.
+                readyListener = committed || attempts.get(0) != this ? null : listener;
+            }
+            if (readyListener != null) {
+                deliver(() -> {
+                    if (!listenerClosed) {
+                        readyListener.onReady();
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ecommerce;
+
+import io.grpc.*;
+
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hedges idempotent unary calls: when a call has not completed after the method's recent p95 latency, a second
+ * attempt is sent and whichever completes first wins, the other is cancelled. An attempt that fails with
+ * {@code UNAVAILABLE} is retried straight away. Hedges and retries both draw from a {@link RetryBudget} and a call
+ * makes at most {@code maxAttempts} attempts.
+ *
+ * Only methods listed in {@code hedgedMethods} are hedged, as a hedged request may be executed more than once.
+ */
+public class HedgingClientInterceptor implements ClientInterceptor {
+
+    private final Set<String> hedgedMethods;
+    private final ClientMetrics metrics;
+    private final RetryBudget retryBudget;
+    private final int maxAttempts;
+    private final long defaultHedgeDelayNanos;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hedging-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param hedgedMethods          full names of the idempotent unary methods to hedge
+     * @param defaultHedgeDelayMillis delay before hedging a method with too little latency data for a p95
+     */
+    public HedgingClientInterceptor(Set<String> hedgedMethods, ClientMetrics metrics, RetryBudget retryBudget,
+                                    int maxAttempts, long defaultHedgeDelayMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.hedgedMethods = hedgedMethods;
+        this.metrics = metrics;
+        this.retryBudget = retryBudget;
+        this.maxAttempts = maxAttempts;
+        this.defaultHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(defaultHedgeDelayMillis);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        if (method.getType() != MethodDescriptor.MethodType.UNARY
+                || !hedgedMethods.contains(method.getFullMethodName())) {
+            return next.newCall(method, callOptions);
+        }
+        retryBudget.deposit();
+        return new HedgingClientCall<>(method, callOptions, next, this);
+    }
+
+    ClientMetrics.MethodMetrics metricsFor(MethodDescriptor<?, ?> method) {
+        return metrics.forMethod(method.getFullMethodName());
+    }
+
+    long hedgeDelayNanos(MethodDescriptor<?, ?> method) {
+        long p95Micros = metricsFor(method).getRecentP95Micros();
+        return p95Micros < 0 ? defaultHedgeDelayNanos : TimeUnit.MICROSECONDS.toNanos(p95Micros);
+    }
+
+    RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+}
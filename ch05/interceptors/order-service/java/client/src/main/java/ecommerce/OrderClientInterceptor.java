@@ -2,9 +2,33 @@ package ecommerce;
 
 import io.grpc.*;
 
+/**
+ * Records the client-observed latency and final status of every call in {@link ClientMetrics}. Install it as the
+ * outermost interceptor so the latency includes any hedged or retried attempts.
+ */
 public class OrderClientInterceptor implements ClientInterceptor {
+
+    private final ClientMetrics metrics;
+
+    public OrderClientInterceptor(ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
-        return null;
+        ClientMetrics.MethodMetrics methodMetrics = metrics.forMethod(method.getFullMethodName());
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                long startNanos = System.nanoTime();
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        methodMetrics.onCallFinished(status.getCode(), System.nanoTime() - startNanos);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
     }
 }
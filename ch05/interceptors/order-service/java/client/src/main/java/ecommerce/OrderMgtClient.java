@@ -5,6 +5,7 @@ import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.stub.StreamObserver;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -15,8 +16,16 @@ public class OrderMgtClient {
     private static final Logger logger = Logger.getLogger(OrderMgtClient.class.getName());
 
     public static void main(String[] args) {
-        ManagedChannel channel = ManagedChannelBuilder.forAddress(
-                "localhost", 50051).usePlaintext().build();
+        ClientMetrics metrics = new ClientMetrics();
+        // getOrder is idempotent, so a slow call can safely be hedged. At most 10% extra calls, 2 attempts per call.
+        HedgingClientInterceptor hedgingInterceptor = new HedgingClientInterceptor(
+                Collections.singleton(OrderManagementGrpc.getGetOrderMethod().getFullMethodName()),
+                metrics, new RetryBudget(0.1, 10), 2, 50);
+        // The last interceptor runs first, so the recorded latency covers all attempts of a call.
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", 50051)
+                .usePlaintext()
+                .intercept(hedgingInterceptor, new OrderClientInterceptor(metrics))
+                .build();
         OrderManagementGrpc.OrderManagementBlockingStub stub = OrderManagementGrpc.newBlockingStub(channel);
         OrderManagementGrpc.OrderManagementStub asyncStub = OrderManagementGrpc.newStub(channel);
 
@@ -56,8 +65,8 @@ public class OrderMgtClient {
         // Process Order
         invokeOrderProcess(asyncStub);
 
-
-
+        logger.info(metrics.report());
+        channel.shutdown();
     }
 
 
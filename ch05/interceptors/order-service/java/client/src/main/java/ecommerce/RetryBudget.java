@@ -0,0 +1,51 @@
+package ecommerce;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds hedges and retries to a fraction of the original calls, so a struggling backend doesn't get a multiple of
+ * the regular load. Every call deposits {@code ratio} tokens up to {@code maxTokens}; every hedge or retry withdraws
+ * one token and is skipped when there isn't one.
+ */
+public class RetryBudget {
+
+    private static final long MILLI_TOKENS_PER_TOKEN = 1000;
+
+    private final long depositMilliTokens;
+    private final long maxMilliTokens;
+    private final AtomicLong milliTokens;
+
+    /**
+     * @param ratio     hedges and retries allowed per call, e.g. 0.1 for 10%
+     * @param maxTokens tokens the budget can save up, which is also where it starts
+     */
+    public RetryBudget(double ratio, int maxTokens) {
+        if (ratio < 0 || maxTokens < 1) {
+            throw new IllegalArgumentException("ratio must not be negative and maxTokens must be positive");
+        }
+        this.depositMilliTokens = Math.round(ratio * MILLI_TOKENS_PER_TOKEN);
+        this.maxMilliTokens = maxTokens * MILLI_TOKENS_PER_TOKEN;
+        this.milliTokens = new AtomicLong(maxMilliTokens);
+    }
+
+    public void deposit() {
+        long current;
+        do {
+            current = milliTokens.get();
+            if (current >= maxMilliTokens) {
+                return;
+            }
+        } while (!milliTokens.compareAndSet(current, Math.min(maxMilliTokens, current + depositMilliTokens)));
+    }
+
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = milliTokens.get();
+            if (current < MILLI_TOKENS_PER_TOKEN) {
+                return false;
+            }
+        } while (!milliTokens.compareAndSet(current, current - MILLI_TOKENS_PER_TOKEN));
+        return true;
+    }
+}
@@ -1,29 +1,47 @@
 package ecommerce;
 
+import ecommerce.bootstrap.ServerExecutors;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.ServerInterceptors;
 
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class OrderMgtServer {
     private static final Logger logger = Logger.getLogger(OrderMgtServer.class.getName());
 
     private Server server;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final ScheduledExecutorService metricsReporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private void start() throws IOException {
         /* The port on which the server should run */
         int port = 50051;
-        server = ServerBuilder.forPort(port)
-                .addService(ServerInterceptors.intercept(new OrderMgtServiceImpl(), new OrderMgtServerInterceptor()))
+        // Fraction of calls whose payloads are logged, e.g. -Dorder.interceptor.payloadLogSampleRate=0.01
+        double payloadLogSampleRate = Double.parseDouble(
+                System.getProperty("order.interceptor.payloadLogSampleRate", "0"));
+        server = ServerExecutors.configure(ServerBuilder.forPort(port))
+                .addService(ServerInterceptors.intercept(new OrderMgtServiceImpl(),
+                        new OrderMgtServerInterceptor(metrics, payloadLogSampleRate)))
                 .build()
                 .start();
         logger.info("Server started, listening on " + port);
+        int reportIntervalSeconds = Integer.getInteger("order.metrics.reportIntervalSeconds", 60);
+        metricsReporter.scheduleAtFixedRate(() -> logger.info(metrics.report()),
+                reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             // Use stderr here since the logger may have been reset by its JVM shutdown hook.
             logger.info("*** shutting down gRPC server since JVM is shutting down");
             OrderMgtServer.this.stop();
+            System.err.println(metrics.report());
             logger.info("*** server shut down");
         }));
     }
@@ -32,6 +50,7 @@ public class OrderMgtServer {
         if (server != null) {
             server.shutdown();
         }
+        metricsReporter.shutdownNow();
     }
 
     /**
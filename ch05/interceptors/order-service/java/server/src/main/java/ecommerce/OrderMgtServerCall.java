@@ -1,17 +1,32 @@
 package ecommerce;
 
 import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.ServerCall;
+import io.grpc.Status;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.logging.Logger;
 
 public class OrderMgtServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>  {
 
     private static final Logger logger = Logger.getLogger(OrderMgtServerCall.class.getName());
 
-    OrderMgtServerCall(ServerCall<ReqT, RespT> delegate) {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<OrderMgtServerCall> FINISHED =
+            AtomicIntegerFieldUpdater.newUpdater(OrderMgtServerCall.class, "finished");
+
+    private final ServerMetrics.MethodMetrics metrics;
+    private final boolean logPayloads;
+    private final long startNanos = System.nanoTime();
+    private volatile int finished;
+
+    OrderMgtServerCall(ServerCall<ReqT, RespT> delegate, ServerMetrics.MethodMetrics metrics, boolean logPayloads) {
         super(delegate);
+        this.metrics = metrics;
+        this.logPayloads = logPayloads;
+        metrics.onCallStarted();
     }
 
     @Override
@@ -26,7 +41,32 @@ public class OrderMgtServerCall<ReqT, RespT> extends ForwardingServerCall.Simple
 
     @Override
     public void sendMessage(RespT message) {
-        logger.info("Message from Service -> Client : " + message);
+        metrics.onMessageSent(message);
+        if (logPayloads) {
+            logger.info("Message from Service -> Client : " + message);
+        }
         super.sendMessage(message);
     }
+
+    @Override
+    public void close(Status status, Metadata trailers) {
+        finish(status.getCode());
+        super.close(status, trailers);
+    }
+
+    void onMessageReceived(ReqT message) {
+        metrics.onMessageReceived(message);
+        if (logPayloads) {
+            logger.info("Message Received from Client -> Service " + message);
+        }
+    }
+
+    /**
+     * Records the end of the call once, whether the service closed it or the client cancelled it first.
+     */
+    void finish(Status.Code code) {
+        if (FINISHED.compareAndSet(this, 0, 1)) {
+            metrics.onCallFinished(code, startNanos);
+        }
+    }
 }
@@ -2,16 +2,16 @@ package ecommerce;
 
 import io.grpc.ForwardingServerCallListener;
 import io.grpc.ServerCall;
-
-import java.util.logging.Logger;
+import io.grpc.Status;
 
 public class OrderMgtServerCallListener<R> extends ForwardingServerCallListener<R> {
-    private static final Logger logger = Logger.getLogger(OrderMgtServerCallListener.class.getName());
 
     private final ServerCall.Listener<R> delegate;
+    private final OrderMgtServerCall<R, ?> serverCall;
 
-    OrderMgtServerCallListener(ServerCall.Listener<R> delegate) {
+    OrderMgtServerCallListener(ServerCall.Listener<R> delegate, OrderMgtServerCall<R, ?> serverCall) {
         this.delegate = delegate;
+        this.serverCall = serverCall;
     }
 
     @Override
@@ -21,7 +21,13 @@ public class OrderMgtServerCallListener<R> extends ForwardingServerCallListener<
 
     @Override
     public void onMessage(R message) {
-        logger.info("Message Received from Client -> Service " + message);
+        serverCall.onMessageReceived(message);
         super.onMessage(message);
     }
+
+    @Override
+    public void onCancel() {
+        serverCall.finish(Status.Code.CANCELLED);
+        super.onCancel();
+    }
 }
@@ -2,18 +2,34 @@ package ecommerce;
 
 import io.grpc.*;
 
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Logger;
 
+/**
+ * Records per-method call metrics in {@link ServerMetrics}. Request and response payloads are logged only for a
+ * sample of calls, {@code payloadLogSampleRate} (0 to 1) of them, as formatting a message walks the whole protobuf.
+ */
 public class OrderMgtServerInterceptor implements io.grpc.ServerInterceptor {
     private static final Logger logger = Logger.getLogger(OrderMgtServerInterceptor.class.getName());
 
+    private final ServerMetrics metrics;
+    private final double payloadLogSampleRate;
+
+    public OrderMgtServerInterceptor(ServerMetrics metrics, double payloadLogSampleRate) {
+        this.metrics = metrics;
+        this.payloadLogSampleRate = payloadLogSampleRate;
+    }
+
     @Override
     public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
-
-        logger.info("======= [Server Interceptor] : Remote Method Invoked - " + call.getMethodDescriptor().getFullMethodName());
-        ServerCall<ReqT, RespT> serverCall = new OrderMgtServerCall<>(call);
-        return new OrderMgtServerCallListener<>(next.startCall(serverCall, headers));
+        String method = call.getMethodDescriptor().getFullMethodName();
+        boolean logPayloads = payloadLogSampleRate > 0
+                && ThreadLocalRandom.current().nextDouble() < payloadLogSampleRate;
+        if (logPayloads) {
+            logger.info("======= [Server Interceptor] : Remote Method Invoked - " + method);
+        }
+        OrderMgtServerCall<ReqT, RespT> serverCall = new OrderMgtServerCall<>(call, metrics.forMethod(method), logPayloads);
+        return new OrderMgtServerCallListener<>(next.startCall(serverCall, headers), serverCall);
     }
 
 }
-
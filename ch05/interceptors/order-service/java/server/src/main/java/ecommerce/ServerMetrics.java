@@ -0,0 +1,123 @@
+package ecommerce;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-method call metrics recorded by {@link OrderMgtServerInterceptor}. Counters are {@link LongAdder}s and
+ * distributions are HdrHistogram {@link Recorder}s, so recording is lock-free and doesn't allocate; building the
+ * report is left to {@link #report()}, which is called off the request path.
+ */
+public class ServerMetrics {
+
+    private static final Status.Code[] STATUS_CODES = Status.Code.values();
+
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    public MethodMetrics forMethod(String fullMethodName) {
+        MethodMetrics metrics = methods.get(fullMethodName);
+        if (metrics == null) {
+            metrics = methods.computeIfAbsent(fullMethodName, name -> new MethodMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Formats the counters and the latency and message size distributions since the previous report.
+     */
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder("Server metrics");
+        methods.forEach((method, metrics) -> metrics.appendTo(report.append('\n').append(method)));
+        return report.toString();
+    }
+
+    public static final class MethodMetrics {
+        private final LongAdder started = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder messagesReceived = new LongAdder();
+        private final LongAdder messagesSent = new LongAdder();
+        private final LongAdder[] statusCounts = new LongAdder[STATUS_CODES.length];
+        private final Recorder latencyMicros = new Recorder(3);
+        private final Recorder requestBytes = new Recorder(2);
+        private final Recorder responseBytes = new Recorder(2);
+
+        private MethodMetrics() {
+            for (int i = 0; i < statusCounts.length; i++) {
+                statusCounts[i] = new LongAdder();
+            }
+        }
+
+        void onCallStarted() {
+            started.increment();
+            inFlight.increment();
+        }
+
+        void onMessageReceived(Object message) {
+            messagesReceived.increment();
+            requestBytes.recordValue(serializedSize(message));
+        }
+
+        void onMessageSent(Object message) {
+            messagesSent.increment();
+            responseBytes.recordValue(serializedSize(message));
+        }
+
+        void onCallFinished(Status.Code code, long startNanos) {
+            inFlight.decrement();
+            statusCounts[code.ordinal()].increment();
+            latencyMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        }
+
+        public long getStarted() {
+            return started.sum();
+        }
+
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        public long getStatusCount(Status.Code code) {
+            return statusCounts[code.ordinal()].sum();
+        }
+
+        // Protobuf memoizes the serialized size, so the marshaller doesn't compute it a second time.
+        private static int serializedSize(Object message) {
+            return message instanceof MessageLite ? ((MessageLite) message).getSerializedSize() : 0;
+        }
+
+        private void appendTo(StringBuilder report) {
+            report.append(" : started ").append(started.sum())
+                    .append(", in flight ").append(inFlight.sum())
+                    .append(", received ").append(messagesReceived.sum())
+                    .append(", sent ").append(messagesSent.sum());
+            for (Status.Code code : STATUS_CODES) {
+                long count = statusCounts[code.ordinal()].sum();
+                if (count > 0) {
+                    report.append(", ").append(code).append(' ').append(count);
+                }
+            }
+            Histogram latency = latencyMicros.getIntervalHistogram();
+            if (latency.getTotalCount() > 0) {
+                report.append(String.format("%n    latency us : p50 %d, p99 %d, p99.9 %d, max %d",
+                        latency.getValueAtPercentile(50), latency.getValueAtPercentile(99),
+                        latency.getValueAtPercentile(99.9), latency.getMaxValue()));
+            }
+            appendSizes(report, "request", requestBytes.getIntervalHistogram());
+            appendSizes(report, "response", responseBytes.getIntervalHistogram());
+        }
+
+        private static void appendSizes(StringBuilder report, String kind, Histogram sizes) {
+            if (sizes.getTotalCount() > 0) {
+                report.append(String.format("%n    %s bytes : mean %.1f, p99 %d, max %d",
+                        kind, sizes.getMean(), sizes.getValueAtPercentile(99), sizes.getMaxValue()));
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ecommerce;
 
+import ecommerce.bootstrap.ServerExecutors;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.ServerInterceptors;
@@ -15,7 +16,7 @@ public class OrderMgtServer {
     private void start() throws IOException {
         /* The port on which the server should run */
         int port = 50051;
-        server = ServerBuilder.forPort(port)
+        server = ServerExecutors.configure(ServerBuilder.forPort(port))
                 .addService(ServerInterceptors.intercept(new OrderMgtServiceImpl(), new MDInterceptor()))
                 .build()
                 .start();
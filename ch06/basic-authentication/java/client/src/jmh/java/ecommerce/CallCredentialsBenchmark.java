@@ -0,0 +1,134 @@
+package ecommerce;
+
+import io.grpc.CallCredentials;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of applying {@link BasicCallCredentials}, compared with building the header on every call and
+ * applying it on the call executor as the credentials used to. The applier merges the headers into a new
+ * {@link Metadata} like gRPC does. Run with {@code -prof gc} to compare the allocation per call.
+ *
+ * The {@code *DirectExecutor} methods measure the work of applying the credentials; the {@code *CallExecutor}
+ * methods use a real executor and wait for the headers, so they include the thread hop of the previous version.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallCredentialsBenchmark {
+
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private CallCredentials perCall;
+    private CallCredentials cached;
+    private ExecutorService callExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        perCall = new PerCallBasicCallCredentials("admin", "admin");
+        cached = new BasicCallCredentials("admin", "admin");
+        callExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        callExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public Metadata perCallDirectExecutor() {
+        return apply(perCall, DIRECT_EXECUTOR);
+    }
+
+    @Benchmark
+    public Metadata cachedDirectExecutor() {
+        return apply(cached, DIRECT_EXECUTOR);
+    }
+
+    @Benchmark
+    public Metadata perCallCallExecutor() {
+        return apply(perCall, callExecutor);
+    }
+
+    @Benchmark
+    public Metadata cachedCallExecutor() {
+        return apply(cached, callExecutor);
+    }
+
+    private static Metadata apply(CallCredentials credentials, Executor executor) {
+        HeadersApplier applier = new HeadersApplier();
+        credentials.applyRequestMetadata(null, executor, applier);
+        return applier.join();
+    }
+
+    private static final class HeadersApplier extends CallCredentials.MetadataApplier {
+        private final Metadata headers = new Metadata();
+        private final CompletableFuture<Metadata> applied = new CompletableFuture<>();
+
+        @Override
+        public void apply(Metadata credentialHeaders) {
+            headers.merge(credentialHeaders);
+            applied.complete(headers);
+        }
+
+        @Override
+        public void fail(Status status) {
+            applied.completeExceptionally(status.asRuntimeException());
+        }
+
+        Metadata join() {
+            return applied.join();
+        }
+    }
+
+    /**
+     * The previous implementation: builds the header on every call, on the call executor.
+     */
+    private static final class PerCallBasicCallCredentials extends CallCredentials {
+        private final String credentials;
+
+        PerCallBasicCallCredentials(String username, String password) {
+            this.credentials = username + ":" + password;
+        }
+
+        @Override
+        public void applyRequestMetadata(RequestInfo requestInfo, Executor executor, MetadataApplier applier) {
+            executor.execute(() -> {
+                try {
+                    Metadata headers = new Metadata();
+                    Metadata.Key<String> authKey = Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
+                    headers.put(authKey, "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes()));
+                    applier.apply(headers);
+                } catch (Throwable e) {
+                    applier.fail(Status.UNAUTHENTICATED.withCause(e));
+                }
+            });
+        }
+
+        @Override
+        public void thisUsesUnstableApi() {
+        }
+    }
+}
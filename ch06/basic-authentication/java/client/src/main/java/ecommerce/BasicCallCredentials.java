@@ -2,31 +2,32 @@ package ecommerce;
 
 import io.grpc.CallCredentials;
 import io.grpc.Metadata;
-import io.grpc.Status;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.concurrent.Executor;
 
+/**
+ * Adds a Basic {@code authorization} header to every call. The header is encoded once and applied inline, as it
+ * never changes and needs no I/O.
+ */
 public class BasicCallCredentials extends CallCredentials {
 
-    private final String credentials;
+    private static final Metadata.Key<String> AUTHORIZATION_KEY =
+            Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
+
+    // Never modified after construction; the applier copies it into each call's headers.
+    private final Metadata headers = new Metadata();
 
     public BasicCallCredentials(String username, String password) {
-        this.credentials = username + ":" + password;
+        String credentials = username + ":" + password;
+        headers.put(AUTHORIZATION_KEY,
+                "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
     }
 
     @Override
     public void applyRequestMetadata(RequestInfo requestInfo, Executor executor, MetadataApplier applier) {
-        executor.execute(() -> {
-            try {
-                Metadata headers = new Metadata();
-                Metadata.Key<String> authKey = Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
-                headers.put(authKey, "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes()));
-                applier.apply(headers);
-            } catch (Throwable e) {
-                applier.fail(Status.UNAUTHENTICATED.withCause(e));
-            }
-        });
+        applier.apply(headers);
     }
 
     @Override
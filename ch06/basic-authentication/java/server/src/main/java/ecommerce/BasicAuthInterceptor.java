@@ -1,5 +1,9 @@
 package ecommerce;
 
+import ecommerce.bootstrap.AuthResultCache;
+import ecommerce.bootstrap.DelayedServerCallListener;
+import ecommerce.bootstrap.SerializingExecutor;
+import ecommerce.bootstrap.VerifiedToken;
 import io.grpc.Context;
 import io.grpc.Contexts;
 import io.grpc.Metadata;
@@ -8,7 +12,14 @@ import io.grpc.ServerCallHandler;
 import io.grpc.ServerInterceptor;
 import io.grpc.Status;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
@@ -17,11 +28,23 @@ public class BasicAuthInterceptor implements ServerInterceptor {
 
     private static final ServerCall.Listener NOOP_LISTENER = new ServerCall.Listener() {
     };
-    private static final String ADMIN_USER_CREDENTIALS = "admin:admin";
+    private static final byte[] ADMIN_USER_CREDENTIALS = "admin:admin".getBytes(StandardCharsets.UTF_8);
     private static final Context.Key<String> USER_ID_CTX_KEY = Context.key("userId");
     private static final String ADMIN_USER_ID = "admin";
+    private static final CompletableFuture<VerifiedToken> INVALID = CompletableFuture.completedFuture(null);
     private static final Logger logger = Logger.getLogger(BasicAuthInterceptor.class.getName());
 
+    private final AuthResultCache authCache = new AuthResultCache(BasicAuthInterceptor::verifyCredentials,
+            10_000, 1_000, Duration.ofMinutes(5), Duration.ofSeconds(5), ForkJoinPool.commonPool());
+    private final Executor callExecutor;
+
+    /**
+     * @param callExecutor the executor the server runs its calls on, see {@code ServerBuilder.executor}
+     */
+    public BasicAuthInterceptor(Executor callExecutor) {
+        this.callExecutor = callExecutor;
+    }
+
     @Override
     public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
         String basicAuthString = headers.get(Metadata.Key.of("authorization", ASCII_STRING_MARSHALLER));
@@ -30,22 +53,57 @@ public class BasicAuthInterceptor implements ServerInterceptor {
                     headers);
             return NOOP_LISTENER;
         }
-        if (validUser(basicAuthString)) {
-            Context ctx = Context.current().withValue(USER_ID_CTX_KEY, ADMIN_USER_ID);
-            return Contexts.interceptCall(ctx, call, headers, next);
-        } else {
+        CompletableFuture<VerifiedToken> verification = authCache.verify(basicAuthString);
+        Context context = Context.current();
+        if (verification.isDone()) {
+            return startCall(context, call, headers, next, verification);
+        }
+        // Another call is checking the same header. Hold this call's events back instead of blocking the thread, and
+        // start it on the call executor once the check is done.
+        DelayedServerCallListener<ReqT> delayedListener = new DelayedServerCallListener<>();
+        verification.whenCompleteAsync((token, error) ->
+                        delayedListener.setListener(startCall(context, call, headers, next, verification)),
+                new SerializingExecutor(callExecutor));
+        return delayedListener;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <ReqT, RespT> ServerCall.Listener<ReqT> startCall(Context context, ServerCall<ReqT, RespT> call,
+                                                                     Metadata headers, ServerCallHandler<ReqT, RespT> next,
+                                                                     CompletableFuture<VerifiedToken> verification) {
+        VerifiedToken token;
+        try {
+            token = verification.join();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Credential verification failed", e);
+            call.close(Status.UNAVAILABLE.withDescription("Credential verification failed"), new Metadata());
+            return NOOP_LISTENER;
+        }
+        if (token == null) {
             logger.info("Verification failed - Unauthenticated!");
             call.close(Status.UNAUTHENTICATED.withDescription("Invalid basic credentials"), headers);
             return NOOP_LISTENER;
         }
+        Context ctx = context.withValue(USER_ID_CTX_KEY, token.getUserId());
+        return Contexts.interceptCall(ctx, call, headers, next);
     }
 
-    private boolean validUser(String basicAuthString) {
-        if (basicAuthString == null) {
-            return false;
+    public AuthResultCache getAuthCache() {
+        return authCache;
+    }
+
+    private static CompletableFuture<VerifiedToken> verifyCredentials(String basicAuthString) {
+        if (!basicAuthString.startsWith("Basic ")) {
+            return INVALID;
+        }
+        byte[] credentials;
+        try {
+            credentials = Base64.getDecoder().decode(basicAuthString.substring("Basic ".length()).trim());
+        } catch (IllegalArgumentException e) {
+            return INVALID;
         }
-        String token = basicAuthString.substring("Basic ".length()).trim();
-        byte[] byteArray = Base64.getDecoder().decode(token.getBytes());
-        return ADMIN_USER_CREDENTIALS.equals(new String(byteArray));
+        // Constant-time comparison, so response times don't reveal how much of the credentials matched.
+        return MessageDigest.isEqual(ADMIN_USER_CREDENTIALS, credentials)
+                ? CompletableFuture.completedFuture(new VerifiedToken(ADMIN_USER_ID, 0)) : INVALID;
     }
 }
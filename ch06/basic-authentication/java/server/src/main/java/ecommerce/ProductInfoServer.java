@@ -1,5 +1,6 @@
 package ecommerce;
 
+import ecommerce.bootstrap.ServerExecutors;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.ServerInterceptors;
@@ -7,6 +8,8 @@ import io.grpc.ServerInterceptors;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class ProductInfoServer {
@@ -14,22 +17,26 @@ public class ProductInfoServer {
     private static final Logger logger = Logger.getLogger(ProductInfoServer.class.getName());
 
     private Server server;
+    private Executor callExecutor;
 
     private void start() throws IOException {
         File certFile = Paths.get("basic-authentication", "certs", "server.crt").toFile();
         File keyFile = Paths.get("basic-authentication", "certs", "server.pem").toFile();
         /* The port on which the server should run */
         int port = 50051;
+        callExecutor = ServerExecutors.newExecutor();
+        BasicAuthInterceptor authInterceptor = new BasicAuthInterceptor(callExecutor);
         server = ServerBuilder.forPort(port)
-                .addService(ServerInterceptors.intercept(new ProductInfoImpl(), new BasicAuthInterceptor()))
+                .executor(callExecutor)
+                .addService(ServerInterceptors.intercept(new ProductInfoImpl(), authInterceptor))
                 .useTransportSecurity(certFile, keyFile)
                 .build()
                 .start();
         logger.info("Server started, listening on " + port);
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            // Use stderr here since the logger may have been reset by its JVM shutdown hook.
             logger.info("*** shutting down gRPC server since JVM is shutting down");
             ProductInfoServer.this.stop();
+            logger.info(authInterceptor.getAuthCache().stats());
             logger.info("*** server shut down");
         }));
     }
@@ -46,6 +53,7 @@ public class ProductInfoServer {
     private void blockUntilShutdown() throws InterruptedException {
         if (server != null) {
             server.awaitTermination();
+            ServerExecutors.shutdown(callExecutor, 5, TimeUnit.SECONDS);
         }
     }
 
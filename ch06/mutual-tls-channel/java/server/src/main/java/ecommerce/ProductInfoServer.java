@@ -1,7 +1,9 @@
 package ecommerce;
 
+import ecommerce.bootstrap.ReloadingSslContext;
+import ecommerce.bootstrap.ServerExecutors;
+import ecommerce.bootstrap.ServerTlsConfig;
 import io.grpc.Server;
-import io.grpc.netty.GrpcSslContexts;
 import io.grpc.netty.NettyServerBuilder;
 import io.netty.handler.ssl.ClientAuth;
 
@@ -15,19 +17,19 @@ public class ProductInfoServer {
     private static final Logger logger = Logger.getLogger(ProductInfoServer.class.getName());
 
     private Server server;
+    private ReloadingSslContext sslContext;
 
     private void start() throws IOException {
         File certFile = Paths.get("mutual-tls-channel", "certs", "server.crt").toFile();
         File keyFile = Paths.get("mutual-tls-channel", "certs", "server.pem").toFile();
         File caFile = Paths.get("mutual-tls-channel", "certs", "ca.crt").toFile();
+        sslContext = new ReloadingSslContext(
+                ServerTlsConfig.fromSystemProperties(certFile, keyFile, caFile, ClientAuth.OPTIONAL));
         /* The port on which the server should run */
         int port = 50051;
-        server = NettyServerBuilder.forPort(port)
+        server = ServerExecutors.configure(NettyServerBuilder.forPort(port))
                 .addService(new ProductInfoImpl())
-                .sslContext(GrpcSslContexts.forServer(certFile, keyFile)
-                        .trustManager(caFile)
-                        .clientAuth(ClientAuth.OPTIONAL)
-                        .build())
+                .sslContext(sslContext)
                 .build()
                 .start();
         logger.info("Server started, listening on " + port);
@@ -43,6 +45,9 @@ public class ProductInfoServer {
         if (server != null) {
             server.shutdown();
         }
+        if (sslContext != null) {
+            sslContext.close();
+        }
     }
 
     /**
@@ -0,0 +1,178 @@
+package ecommerce;
+
+import ecommerce.bootstrap.ReloadingSslContext;
+import ecommerce.bootstrap.ServerTlsConfig;
+import io.grpc.netty.GrpcSslContexts;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+/**
+ * Handshakes per second of the server's TLS configuration, with the JDK and with OpenSSL, for full handshakes and for
+ * clients resuming their previous session (by session ID in TLS 1.2, by ticket in TLS 1.3). The handshake runs
+ * between two {@link SSLEngine}s in memory, so the numbers are the CPU cost of the handshakes alone, including
+ * the close_notify exchange.
+ *
+ * The client always uses the JDK provider, since netty's OpenSSL client engine does not resume sessions.
+ * The certificates are read from {@code productinfo.tls.certDir}, by default the sample's {@code certs} directory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TlsHandshakeBenchmark {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    @Param({"JDK", "OPENSSL"})
+    public ServerTlsConfig.Provider provider;
+
+    @Param({"TLSv1.2", "TLSv1.3"})
+    public String protocol;
+
+    @Param({"full", "resumed"})
+    public String handshake;
+
+    private ReloadingSslContext serverContext;
+    private SslContext clientContext;
+    private boolean resume;
+    private ByteBuffer clientToServer;
+    private ByteBuffer serverToClient;
+    private ByteBuffer application;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SSLException {
+        Path certDir = certDir();
+        ServerTlsConfig config = new ServerTlsConfig(certDir.resolve("server.crt").toFile(),
+                certDir.resolve("server.pem").toFile(), null, ClientAuth.NONE, provider, null,
+                Collections.singletonList(protocol), 20480, 3600, 0, 0);
+        // Built like the server's, so OpenSSL issues tickets with the shared ticket key.
+        serverContext = new ReloadingSslContext(config);
+        clientContext = GrpcSslContexts.configure(SslContextBuilder.forClient(), SslProvider.JDK)
+                .trustManager(certDir.resolve("server.crt").toFile())
+                .ciphers(ServerTlsConfig.DEFAULT_CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+                .protocols(protocol)
+                .build();
+        resume = "resumed".equals(handshake);
+        clientToServer = ByteBuffer.allocate(64 * 1024);
+        serverToClient = ByteBuffer.allocate(64 * 1024);
+        application = ByteBuffer.allocate(64 * 1024);
+        // Leaves a session to resume in the client's cache.
+        handshake();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serverContext.close();
+    }
+
+    @Benchmark
+    public String handshake() throws SSLException {
+        // The JDK client only looks for a session to resume when it knows the peer's host and port.
+        SSLEngine client = resume
+                ? clientContext.newEngine(ByteBufAllocator.DEFAULT, "localhost", 50051)
+                : clientContext.newEngine(ByteBufAllocator.DEFAULT);
+        SSLEngine server = serverContext.newEngine(ByteBufAllocator.DEFAULT);
+        client.beginHandshake();
+        server.beginHandshake();
+        exchange(client, server);
+        String cipherSuite = client.getSession().getCipherSuite();
+        client.closeOutbound();
+        server.closeOutbound();
+        exchange(client, server);
+        return cipherSuite;
+    }
+
+    private void exchange(SSLEngine client, SSLEngine server) throws SSLException {
+        boolean progress = true;
+        while (progress) {
+            progress = step(client, serverToClient, clientToServer) | step(server, clientToServer, serverToClient);
+        }
+        if (client.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+                || server.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+            throw new SSLException("Handshake stalled: client " + client.getHandshakeStatus() + ", server "
+                    + server.getHandshakeStatus());
+        }
+    }
+
+    /**
+     * Lets the engine consume what its peer sent and send whatever it has to send. Returns whether anything was
+     * consumed or produced.
+     */
+    private boolean step(SSLEngine engine, ByteBuffer in, ByteBuffer out) throws SSLException {
+        boolean progress = false;
+        in.flip();
+        while (in.hasRemaining()) {
+            application.clear();
+            SSLEngineResult result = engine.unwrap(in, application);
+            runDelegatedTasks(engine, result);
+            if (result.bytesConsumed() == 0) {
+                break;
+            }
+            progress = true;
+        }
+        in.compact();
+        while (!engine.isOutboundDone()) {
+            SSLEngineResult result = engine.wrap(EMPTY, out);
+            runDelegatedTasks(engine, result);
+            if (result.bytesProduced() == 0) {
+                break;
+            }
+            progress = true;
+        }
+        return progress;
+    }
+
+    private static void runDelegatedTasks(SSLEngine engine, SSLEngineResult result) {
+        if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+            Runnable task;
+            while ((task = engine.getDelegatedTask()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static Path certDir() {
+        String configured = System.getProperty("productinfo.tls.certDir");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        // The benchmarks run in the project directory, the server in ch06.
+        for (Path candidate : new Path[]{Paths.get("..", "..", "certs"), Paths.get("secure-channel", "certs")}) {
+            if (Files.isRegularFile(candidate.resolve("server.crt"))) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("Certificates not found, set productinfo.tls.certDir to the directory with "
+                + "server.crt and server.pem (working directory " + new File("").getAbsolutePath() + ")");
+    }
+}
@@ -1,25 +1,36 @@
 package ecommerce;
 
+import ecommerce.catalog.IdGenerator;
+import ecommerce.catalog.IdGenerators;
+import ecommerce.catalog.ProductCatalog;
 import io.grpc.Status;
 import io.grpc.StatusException;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
 
 public class ProductInfoImpl extends ProductInfoGrpc.ProductInfoImplBase {
 
-    private Map productMap = new HashMap<String, ProductInfoOuterClass.Product>();
+    // Products are stored with their canonical ID, so getProduct returns them as they are.
+    private final ProductCatalog<ProductInfoOuterClass.Product> productCatalog = new ProductCatalog<>();
+    private final IdGenerator idGenerator;
+
+    public ProductInfoImpl() {
+        this(IdGenerators.configured());
+    }
+
+    public ProductInfoImpl(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
 
     @Override
     public void addProduct(ProductInfoOuterClass.Product request,
                            io.grpc.stub.StreamObserver<ProductInfoOuterClass.ProductID> responseObserver) {
-        UUID uuid = UUID.randomUUID();
-        String randomUUIDString = uuid.toString();
-        request = request.toBuilder().setId(randomUUIDString).build();
-        productMap.put(randomUUIDString, request);
+        UUID uuid = idGenerator.nextId();
+        String uuidString = uuid.toString();
+        productCatalog.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                request.toBuilder().setId(uuidString).build());
         ProductInfoOuterClass.ProductID id
-                = ProductInfoOuterClass.ProductID.newBuilder().setValue(randomUUIDString).build();
+                = ProductInfoOuterClass.ProductID.newBuilder().setValue(uuidString).build();
         responseObserver.onNext(id);
         responseObserver.onCompleted();
     }
@@ -28,8 +39,9 @@ public class ProductInfoImpl extends ProductInfoGrpc.ProductInfoImplBase {
     public void getProduct(ProductInfoOuterClass.ProductID request,
                            io.grpc.stub.StreamObserver<ProductInfoOuterClass.Product> responseObserver) {
         String id = request.getValue();
-        if (productMap.containsKey(id)) {
-            responseObserver.onNext((ProductInfoOuterClass.Product) productMap.get(id));
+        ProductInfoOuterClass.Product product = productCatalog.get(id);
+        if (product != null) {
+            responseObserver.onNext(product);
             responseObserver.onCompleted();
         } else {
             responseObserver.onError(new StatusException(Status.NOT_FOUND));
@@ -1,7 +1,11 @@
 package ecommerce;
 
+import ecommerce.bootstrap.ReloadingSslContext;
+import ecommerce.bootstrap.ServerExecutors;
+import ecommerce.bootstrap.ServerTlsConfig;
 import io.grpc.Server;
-import io.grpc.ServerBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.handler.ssl.ClientAuth;
 
 import java.io.File;
 import java.io.IOException;
@@ -13,15 +17,18 @@ public class ProductInfoServer {
     private static final Logger logger = Logger.getLogger(ProductInfoServer.class.getName());
 
     private Server server;
+    private ReloadingSslContext sslContext;
 
     private void start() throws IOException {
         File certFile = Paths.get("secure-channel", "certs", "server.crt").toFile();
         File keyFile = Paths.get("secure-channel", "certs", "server.pem").toFile();
+        sslContext = new ReloadingSslContext(
+                ServerTlsConfig.fromSystemProperties(certFile, keyFile, null, ClientAuth.NONE));
         /* The port on which the server should run */
         int port = 50051;
-        server = ServerBuilder.forPort(port)
+        server = ServerExecutors.configure(NettyServerBuilder.forPort(port))
                 .addService(new ProductInfoImpl())
-                .useTransportSecurity(certFile, keyFile)
+                .sslContext(sslContext)
                 .build()
                 .start();
         logger.info("Server started, listening on " + port);
@@ -37,6 +44,9 @@ public class ProductInfoServer {
         if (server != null) {
             server.shutdown();
         }
+        if (sslContext != null) {
+            sslContext.close();
+        }
     }
 
     /**
@@ -0,0 +1,147 @@
+package ecommerce;
+
+import io.grpc.CallCredentials;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of applying {@link TokenCallCredentials}, compared with building the header on every call and
+ * applying it on the call executor as the credentials used to. The applier merges the headers into a new
+ * {@link Metadata} like gRPC does. Run with {@code -prof gc} to compare the allocation per call.
+ *
+ * The {@code *DirectExecutor} methods measure the work of applying the credentials; the {@code *CallExecutor}
+ * methods use a real executor and wait for the headers, so they include the thread hop of the previous version.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallCredentialsBenchmark {
+
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private CallCredentials perCall;
+    private CallCredentials cached;
+    private TokenCallCredentials refreshing;
+    private ScheduledExecutorService refresher;
+    private ExecutorService callExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        perCall = new PerCallTokenCallCredentials("some-secret-token");
+        cached = TokenCallCredentials.forToken("some-secret-token");
+        refresher = Executors.newSingleThreadScheduledExecutor();
+        refreshing = TokenCallCredentials.refreshing(() -> new TokenSource.AccessToken("some-secret-token",
+                System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)), refresher, Duration.ofMinutes(5));
+        callExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        refreshing.close();
+        refresher.shutdownNow();
+        callExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public Metadata perCallDirectExecutor() {
+        return apply(perCall, DIRECT_EXECUTOR);
+    }
+
+    @Benchmark
+    public Metadata cachedDirectExecutor() {
+        return apply(cached, DIRECT_EXECUTOR);
+    }
+
+    @Benchmark
+    public Metadata refreshingDirectExecutor() {
+        return apply(refreshing, DIRECT_EXECUTOR);
+    }
+
+    @Benchmark
+    public Metadata perCallCallExecutor() {
+        return apply(perCall, callExecutor);
+    }
+
+    @Benchmark
+    public Metadata cachedCallExecutor() {
+        return apply(cached, callExecutor);
+    }
+
+    private static Metadata apply(CallCredentials credentials, Executor executor) {
+        HeadersApplier applier = new HeadersApplier();
+        credentials.applyRequestMetadata(null, executor, applier);
+        return applier.join();
+    }
+
+    private static final class HeadersApplier extends CallCredentials.MetadataApplier {
+        private final Metadata headers = new Metadata();
+        private final CompletableFuture<Metadata> applied = new CompletableFuture<>();
+
+        @Override
+        public void apply(Metadata credentialHeaders) {
+            headers.merge(credentialHeaders);
+            applied.complete(headers);
+        }
+
+        @Override
+        public void fail(Status status) {
+            applied.completeExceptionally(status.asRuntimeException());
+        }
+
+        Metadata join() {
+            return applied.join();
+        }
+    }
+
+    /**
+     * The previous implementation: builds the header on every call, on the call executor.
+     */
+    private static final class PerCallTokenCallCredentials extends CallCredentials {
+        private final String credentials;
+
+        PerCallTokenCallCredentials(String token) {
+            this.credentials = token;
+        }
+
+        @Override
+        public void applyRequestMetadata(RequestInfo requestInfo, Executor executor, MetadataApplier applier) {
+            executor.execute(() -> {
+                try {
+                    Metadata headers = new Metadata();
+                    Metadata.Key<String> authKey = Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER);
+                    headers.put(authKey, "Bearer " + credentials);
+                    applier.apply(headers);
+                } catch (Throwable e) {
+                    applier.fail(Status.UNAUTHENTICATED.withCause(e));
+                }
+            });
+        }
+
+        @Override
+        public void thisUsesUnstableApi() {
+        }
+    }
+}
@@ -7,6 +7,9 @@ import io.netty.handler.ssl.SslContext;
 
 import java.io.File;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Logger;
 import javax.net.ssl.SSLException;
 
@@ -25,7 +28,17 @@ public class ProductInfoClient {
                 .sslContext(sslContext)
                 .build();
 
-        TokenCallCredentials callCredentials = new TokenCallCredentials("some-secret-token");
+        // A JWT can be passed with -Dproductinfo.auth.token=... when the server verifies JWTs. A real client would
+        // fetch short-lived tokens here, e.g. from an OAuth2 token endpoint, and the credentials refresh them ahead of
+        // their expiry.
+        String token = System.getProperty("productinfo.auth.token", "some-secret-token");
+        ScheduledExecutorService tokenRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TokenCallCredentials callCredentials = TokenCallCredentials.refreshing(
+                () -> new TokenSource.AccessToken(token, 0), tokenRefresher, Duration.ofMinutes(1));
 
         ProductInfoGrpc.ProductInfoBlockingStub stub =
                 ProductInfoGrpc.newBlockingStub(channel).withCallCredentials(callCredentials);
@@ -41,6 +54,8 @@ public class ProductInfoClient {
 
         ProductInfoOuterClass.Product product = stub.getProduct(productID);
         logger.info("Product: " + product.toString());
+        callCredentials.close();
+        tokenRefresher.shutdown();
         channel.shutdown();
     }
 }
@@ -4,33 +4,149 @@ import io.grpc.CallCredentials;
 import io.grpc.Metadata;
 import io.grpc.Status;
 
-import java.util.Base64;
+import java.time.Duration;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-public class TokenCallCredentials extends CallCredentials {
+/**
+ * Adds a Bearer {@code authorization} header to every call. The header is built once per token and applied inline.
+ *
+ * Tokens from a {@link TokenSource} are refreshed on {@code refresher} ahead of their expiry, so calls keep using the
+ * current token while the next one is fetched. A call only waits for a token (on the call's executor, not the
+ * transport thread) before the first token has been fetched, or once refreshing has failed until the token expired.
+ * {@link #close} stops refreshing.
+ */
+public class TokenCallCredentials extends CallCredentials implements AutoCloseable {
 
-    private final String credentials;
+    private static final Logger logger = Logger.getLogger(TokenCallCredentials.class.getName());
+    private static final Metadata.Key<String> AUTHORIZATION_KEY =
+            Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER);
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long MIN_REFRESH_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(1);
 
-    TokenCallCredentials(String token) {
-        this.credentials = token;
+    private final TokenSource tokenSource;
+    private final ScheduledExecutorService refresher;
+    private final long refreshAheadMillis;
+    private volatile CachedHeaders cached;
+    // Guarded by this.
+    private ScheduledFuture<?> scheduledRefresh;
+    private boolean closed;
+
+    private TokenCallCredentials(TokenSource tokenSource, ScheduledExecutorService refresher, long refreshAheadMillis,
+                                 CachedHeaders cached) {
+        this.tokenSource = tokenSource;
+        this.refresher = refresher;
+        this.refreshAheadMillis = refreshAheadMillis;
+        this.cached = cached;
+    }
+
+    /**
+     * Credentials for a token that never changes, e.g. a shared secret.
+     */
+    public static TokenCallCredentials forToken(String token) {
+        TokenSource.AccessToken accessToken = new TokenSource.AccessToken(token, 0);
+        return new TokenCallCredentials(() -> accessToken, null, 0, new CachedHeaders(accessToken));
+    }
+
+    /**
+     * Credentials that fetch their first token right away and keep refreshing it until {@link #close} is called.
+     *
+     * @param refreshAhead how long before a token expires its replacement is fetched
+     */
+    public static TokenCallCredentials refreshing(TokenSource tokenSource, ScheduledExecutorService refresher,
+                                                  Duration refreshAhead) {
+        TokenCallCredentials credentials =
+                new TokenCallCredentials(tokenSource, refresher, refreshAhead.toMillis(), null);
+        // Started only once the credentials are fully constructed.
+        credentials.scheduleRefresh(0);
+        return credentials;
+    }
+
+    /**
+     * Stops refreshing the token. Calls made afterwards still use the last token while it is valid.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+            scheduledRefresh = null;
+        }
     }
 
     @Override
     public void applyRequestMetadata(RequestInfo requestInfo, Executor executor, MetadataApplier applier) {
+        CachedHeaders current = cached;
+        if (current != null && current.isValid(System.currentTimeMillis())) {
+            applier.apply(current.headers);
+            return;
+        }
         executor.execute(() -> {
             try {
-                Metadata headers = new Metadata();
-                Metadata.Key<String> authKey = Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER);
-                headers.put(authKey, "Bearer " + credentials);
-                applier.apply(headers);
+                applier.apply(fetchIfInvalid().headers);
             } catch (Throwable e) {
-                applier.fail(Status.UNAUTHENTICATED.withCause(e));
+                applier.fail(Status.UNAUTHENTICATED.withDescription("Could not obtain an access token").withCause(e));
             }
         });
     }
 
+    private synchronized CachedHeaders fetchIfInvalid() throws Exception {
+        CachedHeaders current = cached;
+        if (current != null && current.isValid(System.currentTimeMillis())) {
+            return current;
+        }
+        current = new CachedHeaders(tokenSource.fetchToken());
+        cached = current;
+        return current;
+    }
+
+    private void refreshInBackground() {
+        long delayMillis;
+        try {
+            CachedHeaders refreshed = new CachedHeaders(tokenSource.fetchToken());
+            synchronized (this) {
+                cached = refreshed;
+            }
+            if (refreshed.expiresAtMillis == 0) {
+                return;
+            }
+            long lifetime = refreshed.expiresAtMillis - System.currentTimeMillis();
+            // Short-lived tokens are refreshed after three quarters of their lifetime at the latest.
+            delayMillis = Math.max(MIN_REFRESH_DELAY_MILLIS, Math.min(lifetime - refreshAheadMillis, lifetime / 4 * 3));
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Access token refresh failed, retrying in " + RETRY_DELAY_MILLIS + " ms", e);
+            delayMillis = RETRY_DELAY_MILLIS;
+        }
+        scheduleRefresh(delayMillis);
+    }
+
+    private synchronized void scheduleRefresh(long delayMillis) {
+        if (!closed) {
+            scheduledRefresh = refresher.schedule(this::refreshInBackground, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
     @Override
     public void thisUsesUnstableApi() {
 
     }
+
+    private static final class CachedHeaders {
+        // Never modified after construction; the applier copies it into each call's headers.
+        private final Metadata headers = new Metadata();
+        private final long expiresAtMillis;
+
+        CachedHeaders(TokenSource.AccessToken token) {
+            headers.put(AUTHORIZATION_KEY, "Bearer " + token.getValue());
+            this.expiresAtMillis = token.getExpiresAtMillis();
+        }
+
+        boolean isValid(long nowMillis) {
+            return expiresAtMillis == 0 || nowMillis < expiresAtMillis;
+        }
+    }
 }
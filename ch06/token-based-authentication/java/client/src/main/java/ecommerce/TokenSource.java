@@ -0,0 +1,33 @@
+package ecommerce;
+
+/**
+ * Obtains access tokens for {@link TokenCallCredentials}, e.g. from an OAuth2 token endpoint.
+ */
+public interface TokenSource {
+
+    /**
+     * Fetches a new token. May block, it is called on a background thread.
+     */
+    AccessToken fetchToken() throws Exception;
+
+    final class AccessToken {
+        private final String value;
+        private final long expiresAtMillis;
+
+        /**
+         * @param expiresAtMillis epoch millis at which the token expires, or 0 if it doesn't expire
+         */
+        public AccessToken(String value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package ecommerce;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import ecommerce.bootstrap.VerifiedToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Verifies JWTs signed with RS256 or ES256 against the public keys in a local JWKS file. Keys are parsed once and
+ * looked up by {@code kid}; the file is re-read when it changes, checked at most every {@code KEY_RELOAD_INTERVAL},
+ * so keys can be rotated without a restart.
+ *
+ * A token is valid when its signature verifies, it has not expired ({@code exp} is required), it is already valid
+ * ({@code nbf}), and its {@code iss} and {@code aud} match when an issuer or audience is configured. The {@code sub}
+ * claim becomes the user ID. Signature checks run on {@code executor}, never on the calling transport thread.
+ */
+public class JwtTokenVerifier implements TokenVerifier {
+
+    private static final Logger logger = Logger.getLogger(JwtTokenVerifier.class.getName());
+    private static final long KEY_RELOAD_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final Base64.Decoder BASE64_URL = Base64.getUrlDecoder();
+
+    private static final ThreadLocal<Signature> RS256 = ThreadLocal.withInitial(() -> signature("SHA256withRSA"));
+    private static final ThreadLocal<Signature> ES256 = ThreadLocal.withInitial(() -> signature("SHA256withECDSA"));
+
+    private final Path jwksFile;
+    private final String issuer;
+    private final String audience;
+    private final long clockSkewMillis;
+    private final Executor executor;
+
+    private volatile Map<String, PublicKey> keys;
+    private volatile long keysLastModified;
+    private volatile long keysCheckedAt;
+
+    /**
+     * @param issuer   required {@code iss}, or {@code null} to accept any issuer
+     * @param audience required {@code aud}, or {@code null} to accept any audience
+     */
+    public JwtTokenVerifier(Path jwksFile, String issuer, String audience, Duration clockSkew, Executor executor) {
+        this.jwksFile = jwksFile;
+        this.issuer = issuer;
+        this.audience = audience;
+        this.clockSkewMillis = clockSkew.toMillis();
+        this.executor = executor;
+        // Fail at startup rather than on the first call if the key file is missing or malformed.
+        reloadKeys(System.nanoTime());
+    }
+
+    @Override
+    public CompletableFuture<VerifiedToken> verify(String token) {
+        return CompletableFuture.supplyAsync(() -> verifyNow(token), executor);
+    }
+
+    VerifiedToken verifyNow(String token) {
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            JsonObject header = parseObject(parts[0]);
+            String algorithm = string(header, "alg");
+            PublicKey key = findKey(string(header, "kid"));
+            if (key == null || !verifySignature(algorithm, key, parts)) {
+                return null;
+            }
+            return checkClaims(parseObject(parts[1]));
+        } catch (IllegalArgumentException | JsonParseException | IllegalStateException
+                | UnsupportedOperationException e) {
+            // Malformed Base64 or JSON, or a header field or claim of the wrong type, e.g. {"alg":{}}. These are
+            // checked before the signature, so they are invalid tokens rather than verifier failures.
+            return null;
+        }
+    }
+
+    private static boolean verifySignature(String algorithm, PublicKey key, String[] parts) {
+        byte[] signature = BASE64_URL.decode(parts[2]);
+        Signature verifier;
+        if ("RS256".equals(algorithm) && "RSA".equals(key.getAlgorithm())) {
+            verifier = RS256.get();
+        } else if ("ES256".equals(algorithm) && "EC".equals(key.getAlgorithm())) {
+            if (signature.length != 64) {
+                return false;
+            }
+            verifier = ES256.get();
+            signature = toDer(signature);
+        } else {
+            // Anything else, including "none" and HMAC algorithms, is rejected.
+            return false;
+        }
+        try {
+            verifier.initVerify(key);
+            verifier.update((parts[0] + '.' + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private VerifiedToken checkClaims(JsonObject claims) {
+        long now = System.currentTimeMillis();
+        JsonElement exp = claims.get("exp");
+        if (exp == null || exp.getAsLong() * 1000 + clockSkewMillis <= now) {
+            return null;
+        }
+        JsonElement nbf = claims.get("nbf");
+        if (nbf != null && nbf.getAsLong() * 1000 - clockSkewMillis > now) {
+            return null;
+        }
+        if (issuer != null && !issuer.equals(string(claims, "iss"))) {
+            return null;
+        }
+        if (audience != null && !hasAudience(claims.get("aud"))) {
+            return null;
+        }
+        String subject = string(claims, "sub");
+        return subject == null ? null : new VerifiedToken(subject, exp.getAsLong() * 1000);
+    }
+
+    private boolean hasAudience(JsonElement aud) {
+        if (aud == null) {
+            return false;
+        }
+        if (aud.isJsonArray()) {
+            for (JsonElement element : aud.getAsJsonArray()) {
+                if (audience.equals(element.getAsString())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return audience.equals(aud.getAsString());
+    }
+
+    private PublicKey findKey(String kid) {
+        long now = System.nanoTime();
+        if (now - keysCheckedAt > KEY_RELOAD_INTERVAL_NANOS) {
+            try {
+                reloadKeys(now);
+            } catch (UncheckedIOException | IllegalArgumentException e) {
+                // Keep verifying with the keys we have, the file may be halfway through being replaced.
+                logger.warning("Could not reload JWKS " + jwksFile + " : " + e.getMessage());
+            }
+        }
+        return keys.get(kid == null ? "" : kid);
+    }
+
+    private synchronized void reloadKeys(long now) {
+        if (keys != null && now - keysCheckedAt <= KEY_RELOAD_INTERVAL_NANOS) {
+            return;
+        }
+        keysCheckedAt = now;
+        try {
+            long lastModified = Files.getLastModifiedTime(jwksFile).toMillis();
+            if (keys != null && lastModified == keysLastModified) {
+                return;
+            }
+            String jwks = new String(Files.readAllBytes(jwksFile), StandardCharsets.UTF_8);
+            keys = parseJwks(jwks);
+            keysLastModified = lastModified;
+            logger.info("Loaded " + keys.size() + " key(s) from " + jwksFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, PublicKey> parseJwks(String jwks) {
+        Map<String, PublicKey> parsed = new HashMap<>();
+        try {
+            for (JsonElement element : new JsonParser().parse(jwks).getAsJsonObject().getAsJsonArray("keys")) {
+                JsonObject jwk = element.getAsJsonObject();
+                PublicKey key = parseJwk(jwk);
+                if (key != null) {
+                    String kid = string(jwk, "kid");
+                    parsed.put(kid == null ? "" : kid, key);
+                }
+            }
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException
+                | NullPointerException e) {
+            throw new IllegalArgumentException("Malformed JWKS", e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid key in JWKS", e);
+        }
+        return parsed;
+    }
+
+    private static PublicKey parseJwk(JsonObject jwk) throws GeneralSecurityException {
+        String keyType = string(jwk, "kty");
+        if ("RSA".equals(keyType)) {
+            return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+                    unsigned(string(jwk, "n")), unsigned(string(jwk, "e"))));
+        }
+        if ("EC".equals(keyType) && "P-256".equals(string(jwk, "crv"))) {
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+            parameters.init(new ECGenParameterSpec("secp256r1"));
+            ECPoint point = new ECPoint(unsigned(string(jwk, "x")), unsigned(string(jwk, "y")));
+            return KeyFactory.getInstance("EC").generatePublic(
+                    new ECPublicKeySpec(point, parameters.getParameterSpec(ECParameterSpec.class)));
+        }
+        // Keys of other types (or for encryption only) can't verify RS256 or ES256 signatures.
+        return null;
+    }
+
+    /**
+     * Converts a JOSE ECDSA signature (r and s as two 32-byte integers) into the DER encoding Java expects.
+     */
+    private static byte[] toDer(byte[] joseSignature) {
+        byte[] r = derInteger(joseSignature, 0);
+        byte[] s = derInteger(joseSignature, 32);
+        byte[] der = new byte[2 + r.length + s.length];
+        der[0] = 0x30;
+        der[1] = (byte) (r.length + s.length);
+        System.arraycopy(r, 0, der, 2, r.length);
+        System.arraycopy(s, 0, der, 2 + r.length, s.length);
+        return der;
+    }
+
+    private static byte[] derInteger(byte[] signature, int offset) {
+        int start = offset;
+        while (start < offset + 31 && signature[start] == 0) {
+            start++;
+        }
+        int length = offset + 32 - start;
+        // A leading zero byte keeps the integer positive when its high bit is set.
+        int pad = (signature[start] & 0x80) != 0 ? 1 : 0;
+        byte[] integer = new byte[2 + pad + length];
+        integer[0] = 0x02;
+        integer[1] = (byte) (pad + length);
+        System.arraycopy(signature, start, integer, 2 + pad, length);
+        return integer;
+    }
+
+    private static JsonObject parseObject(String base64Url) {
+        return new JsonParser().parse(new String(BASE64_URL.decode(base64Url), StandardCharsets.UTF_8))
+                .getAsJsonObject();
+    }
+
+    private static String string(JsonObject object, String member) {
+        JsonElement element = object.get(member);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    private static BigInteger unsigned(String base64Url) {
+        return new BigInteger(1, BASE64_URL.decode(base64Url));
+    }
+
+    private static Signature signature(String algorithm) {
+        try {
+            return Signature.getInstance(algorithm);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
+    }
+}
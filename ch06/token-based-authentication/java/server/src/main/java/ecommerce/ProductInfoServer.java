@@ -1,5 +1,6 @@
 package ecommerce;
 
+import ecommerce.bootstrap.ServerExecutors;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.ServerInterceptors;
@@ -7,6 +8,11 @@ import io.grpc.ServerInterceptors;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class ProductInfoServer {
@@ -14,26 +20,51 @@ public class ProductInfoServer {
     private static final Logger logger = Logger.getLogger(ProductInfoServer.class.getName());
 
     private Server server;
+    private Executor callExecutor;
 
     private void start() throws IOException {
         File certFile = Paths.get("basic-authentication", "certs", "server.crt").toFile();
         File keyFile = Paths.get("basic-authentication", "certs", "server.pem").toFile();
         /* The port on which the server should run */
         int port = 50051;
+        callExecutor = ServerExecutors.newExecutor();
+        TokenAuthInterceptor authInterceptor = new TokenAuthInterceptor(createTokenVerifier(), callExecutor);
         server = ServerBuilder.forPort(port)
-                .addService(ServerInterceptors.intercept(new ProductInfoImpl(), new TokenAuthInterceptor()))
+                .executor(callExecutor)
+                .addService(ServerInterceptors.intercept(new ProductInfoImpl(), authInterceptor))
                 .useTransportSecurity(certFile, keyFile)
                 .build()
                 .start();
         logger.info("Server started, listening on " + port);
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            // Use stderr here since the logger may have been reset by its JVM shutdown hook.
             logger.info("*** shutting down gRPC server since JVM is shutting down");
             ProductInfoServer.this.stop();
+            logger.info(authInterceptor.getAuthCache().stats());
             logger.info("*** server shut down");
         }));
     }
 
+    /**
+     * Verifies JWTs against the JWKS file in {@code productinfo.auth.jwks} when it is set, e.g.
+     * {@code -Dproductinfo.auth.jwks=jwks.json}, and the sample's shared secret
+     * token otherwise. {@code productinfo.auth.issuer} and {@code productinfo.auth.audience} restrict the accepted
+     * JWTs further.
+     */
+    private static TokenVerifier createTokenVerifier() {
+        String jwksFile = System.getProperty("productinfo.auth.jwks");
+        if (jwksFile == null) {
+            return new StaticTokenVerifier(StaticTokenVerifier.SAMPLE_TOKEN, StaticTokenVerifier.SAMPLE_USER_ID);
+        }
+        ExecutorService verifierExecutor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), runnable -> {
+                    Thread thread = new Thread(runnable, "token-verifier");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        return new JwtTokenVerifier(Paths.get(jwksFile), System.getProperty("productinfo.auth.issuer"),
+                System.getProperty("productinfo.auth.audience"), Duration.ofSeconds(30), verifierExecutor);
+    }
+
     private void stop() {
         if (server != null) {
             server.shutdown();
@@ -46,6 +77,7 @@ public class ProductInfoServer {
     private void blockUntilShutdown() throws InterruptedException {
         if (server != null) {
             server.awaitTermination();
+            ServerExecutors.shutdown(callExecutor, 5, TimeUnit.SECONDS);
         }
     }
 
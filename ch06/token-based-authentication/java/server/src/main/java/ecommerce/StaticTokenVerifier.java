@@ -0,0 +1,34 @@
+package ecommerce;
+
+import ecommerce.bootstrap.VerifiedToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Accepts a single shared secret token. For the sake of this example, this forgoes any of the usual OAuth2 token
+ * validation, see {@link JwtTokenVerifier} for signed tokens.
+ */
+public class StaticTokenVerifier implements TokenVerifier {
+
+    /** The shared secret the sample client sends by default. */
+    public static final String SAMPLE_TOKEN = "some-secret-token";
+    public static final String SAMPLE_USER_ID = "admin";
+
+    private static final CompletableFuture<VerifiedToken> INVALID = CompletableFuture.completedFuture(null);
+
+    private final byte[] expectedToken;
+    private final CompletableFuture<VerifiedToken> valid;
+
+    public StaticTokenVerifier(String expectedToken, String userId) {
+        this.expectedToken = expectedToken.getBytes(StandardCharsets.UTF_8);
+        this.valid = CompletableFuture.completedFuture(new VerifiedToken(userId, 0));
+    }
+
+    @Override
+    public CompletableFuture<VerifiedToken> verify(String token) {
+        // Constant-time comparison, so response times don't reveal how much of the token matched.
+        return MessageDigest.isEqual(expectedToken, token.getBytes(StandardCharsets.UTF_8)) ? valid : INVALID;
+    }
+}
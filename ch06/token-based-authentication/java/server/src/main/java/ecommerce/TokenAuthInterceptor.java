@@ -1,5 +1,9 @@
 package ecommerce;
 
+import ecommerce.bootstrap.AuthResultCache;
+import ecommerce.bootstrap.DelayedServerCallListener;
+import ecommerce.bootstrap.SerializingExecutor;
+import ecommerce.bootstrap.VerifiedToken;
 import io.grpc.Context;
 import io.grpc.Contexts;
 import io.grpc.Metadata;
@@ -8,46 +12,87 @@ import io.grpc.ServerCallHandler;
 import io.grpc.ServerInterceptor;
 import io.grpc.Status;
 
-import java.util.Base64;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
 
+/**
+ * Authenticates calls with the bearer token in the {@code authorization} header. Tokens are verified by a
+ * {@link TokenVerifier} without blocking the transport thread: until verification completes, the call's listener
+ * events are held back, then the call either starts with the token's user ID in {@link #USER_ID_CTX_KEY} or is closed
+ * as {@code UNAUTHENTICATED}. Results are cached per header value, so most calls never wait. A call whose token is
+ * still being verified is started on the server's call executor, not on the verifier's threads.
+ */
 public class TokenAuthInterceptor implements ServerInterceptor {
 
     private static final ServerCall.Listener NOOP_LISTENER = new ServerCall.Listener() {
     };
-    private static final String ADMIN_USER_TOKEN = "some-secret-token";
-    private static final Context.Key<String> USER_ID_CTX_KEY = Context.key("userId");
-    private static final String ADMIN_USER_ID = "admin";
+    public static final Context.Key<String> USER_ID_CTX_KEY = Context.key("userId");
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final CompletableFuture<VerifiedToken> INVALID = CompletableFuture.completedFuture(null);
     private static final Logger logger = Logger.getLogger(TokenAuthInterceptor.class.getName());
 
+    private final AuthResultCache authCache;
+    private final Executor callExecutor;
+
+    /**
+     * @param callExecutor the executor the server runs its calls on, see {@code ServerBuilder.executor}
+     */
+    public TokenAuthInterceptor(TokenVerifier tokenVerifier, Executor callExecutor) {
+        this.callExecutor = callExecutor;
+        this.authCache = new AuthResultCache(tokenString -> tokenString.startsWith(BEARER_PREFIX)
+                ? tokenVerifier.verify(tokenString.substring(BEARER_PREFIX.length()).trim()) : INVALID,
+                10_000, Duration.ofMinutes(5), Duration.ofSeconds(5));
+    }
+
     @Override
     public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
         String tokenString = headers.get(Metadata.Key.of("Authorization", ASCII_STRING_MARSHALLER));
         if (tokenString == null) {
             call.close(Status.UNAUTHENTICATED.withDescription("Token value is missing in Metadata"),
-                    headers);
+                    new Metadata());
             return NOOP_LISTENER;
         }
-        if (validUser(tokenString)) {
-            Context ctx = Context.current().withValue(USER_ID_CTX_KEY, ADMIN_USER_ID);
-            return Contexts.interceptCall(ctx, call, headers, next);
-        } else {
+        CompletableFuture<VerifiedToken> verification = authCache.verify(tokenString);
+        // The context of the call, which carries its deadline and cancellation.
+        Context context = Context.current();
+        if (verification.isDone()) {
+            return startCall(context, call, headers, next, verification);
+        }
+        DelayedServerCallListener<ReqT> delayedListener = new DelayedServerCallListener<>();
+        // Start the call, and replay its held back events, on the call executor rather than the verifier's thread.
+        verification.whenCompleteAsync((token, error) ->
+                        delayedListener.setListener(startCall(context, call, headers, next, verification)),
+                new SerializingExecutor(callExecutor));
+        return delayedListener;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <ReqT, RespT> ServerCall.Listener<ReqT> startCall(Context context, ServerCall<ReqT, RespT> call,
+                                                                     Metadata headers, ServerCallHandler<ReqT, RespT> next,
+                                                                     CompletableFuture<VerifiedToken> verification) {
+        VerifiedToken token;
+        try {
+            token = verification.join();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Token verification failed", e);
+            call.close(Status.UNAVAILABLE.withDescription("Token verification failed"), new Metadata());
+            return NOOP_LISTENER;
+        }
+        if (token == null) {
             logger.info("Verification failed - Unauthenticated!");
-            call.close(Status.UNAUTHENTICATED.withDescription("Invalid user token"), headers);
+            call.close(Status.UNAUTHENTICATED.withDescription("Invalid user token"), new Metadata());
             return NOOP_LISTENER;
         }
+        Context ctx = context.withValue(USER_ID_CTX_KEY, token.getUserId());
+        return Contexts.interceptCall(ctx, call, headers, next);
     }
 
-    private boolean validUser(String basicAuthString) {
-        if (basicAuthString == null) {
-            return false;
-        }
-        // Perform the token validation here. For the sake of this example, the code
-        // here forgoes any of the usual OAuth2 token validation and instead checks
-        // for a token matching an arbitrary string.
-        String token = basicAuthString.substring("Bearer ".length()).trim();
-        return ADMIN_USER_TOKEN.equals(token);
+    public AuthResultCache getAuthCache() {
+        return authCache;
     }
 }
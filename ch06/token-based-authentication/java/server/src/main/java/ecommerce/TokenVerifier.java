@@ -0,0 +1,19 @@
+package ecommerce;
+
+import ecommerce.bootstrap.VerifiedToken;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Verifies bearer tokens for {@link TokenAuthInterceptor}. Verification may be slow (signature checks, remote
+ * introspection), so it is asynchronous and must not block the calling thread, which is a transport thread.
+ */
+public interface TokenVerifier {
+
+    /**
+     * @param token the bearer token, without the {@code Bearer } prefix
+     * @return a future that completes with the verified token, with {@code null} if the token is invalid, or
+     * exceptionally if the token could not be verified at all
+     */
+    CompletableFuture<VerifiedToken> verify(String token);
+}
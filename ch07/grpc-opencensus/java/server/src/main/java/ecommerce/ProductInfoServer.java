@@ -1,5 +1,6 @@
 package ecommerce;
 
+import ecommerce.bootstrap.ServerExecutors;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.opencensus.common.Duration;
@@ -20,7 +21,7 @@ public class ProductInfoServer {
     private void start() throws IOException {
         /* The port on which the server should run */
         int port = 50051;
-        server = ServerBuilder.forPort(port)
+        server = ServerExecutors.configure(ServerBuilder.forPort(port))
                 .addService(new ProductInfoImpl())
                 .build()
                 .start();
@@ -1,23 +1,34 @@
 package ecommerce;
 
 import com.google.protobuf.StringValue;
+import ecommerce.catalog.IdGenerator;
+import ecommerce.catalog.IdGenerators;
+import ecommerce.catalog.ProductCatalog;
 import io.grpc.Status;
 import io.grpc.StatusException;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
 
 public class ProductInfoImpl extends ProductInfoGrpc.ProductInfoImplBase {
 
-    private Map productMap = new HashMap<String, ProductInfoOuterClass.Product>();
+    private final ProductCatalog<ProductInfoOuterClass.Product> productCatalog = new ProductCatalog<>();
+    private final IdGenerator idGenerator;
+
+    public ProductInfoImpl() {
+        this(IdGenerators.configured());
+    }
+
+    public ProductInfoImpl(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
 
     @Override
     public void addProduct(ProductInfoOuterClass.Product request, io.grpc.stub.StreamObserver<StringValue> responseObserver) {
-        UUID uuid = UUID.randomUUID();
-        String randomUUIDString = uuid.toString();
-        productMap.put(randomUUIDString, request);
-        StringValue id = StringValue.newBuilder().setValue(randomUUIDString).build();
+        UUID uuid = idGenerator.nextId();
+        String uuidString = uuid.toString();
+        productCatalog.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                request.toBuilder().setId(uuidString).build());
+        StringValue id = StringValue.newBuilder().setValue(uuidString).build();
         responseObserver.onNext(id);
         responseObserver.onCompleted();
     }
@@ -25,8 +36,9 @@ public class ProductInfoImpl extends ProductInfoGrpc.ProductInfoImplBase {
     @Override
     public void getProduct(StringValue request, io.grpc.stub.StreamObserver<ProductInfoOuterClass.Product> responseObserver) {
         String id = request.getValue();
-        if (productMap.containsKey(id)) {
-            responseObserver.onNext((ProductInfoOuterClass.Product) productMap.get(id));
+        ProductInfoOuterClass.Product product = productCatalog.get(id);
+        if (product != null) {
+            responseObserver.onNext(product);
             responseObserver.onCompleted();
         } else {
             responseObserver.onError(new StatusException(Status.NOT_FOUND));
@@ -0,0 +1,14 @@
+package ecommerce.catalog;
+
+import java.util.UUID;
+
+/**
+ * Generates the IDs of new products. Implementations are called concurrently from the call handlers.
+ *
+ * @see IdGenerators
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    UUID nextId();
+}
@@ -0,0 +1,59 @@
+package ecommerce.catalog;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Chooses how a server generates product IDs.
+ *
+ * The generator is selected with the {@code productinfo.id.generator} system property or the
+ * {@code PRODUCTINFO_ID_GENERATOR} environment variable:
+ * <ul>
+ *     <li>{@code time-ordered} - the default, a {@link TimeOrderedIdGenerator}. IDs sort by creation time and are
+ *     generated without contention between threads.</li>
+ *     <li>{@code random} - {@link UUID#randomUUID()}, the previous behaviour. All threads share one
+ *     {@code SecureRandom}, and IDs do not reveal when they were created.</li>
+ * </ul>
+ */
+public final class IdGenerators {
+
+    private static final Logger logger = Logger.getLogger(IdGenerators.class.getName());
+
+    public static final String GENERATOR_PROPERTY = "productinfo.id.generator";
+    public static final String GENERATOR_ENV = "PRODUCTINFO_ID_GENERATOR";
+
+    public enum Type {
+        TIME_ORDERED, RANDOM
+    }
+
+    private IdGenerators() {
+    }
+
+    /**
+     * The configured generator.
+     */
+    public static IdGenerator configured() {
+        Type type = configuredType();
+        logger.info("Product IDs are " + type.name().toLowerCase(Locale.ROOT).replace('_', '-') + " UUIDs");
+        return of(type);
+    }
+
+    public static IdGenerator of(Type type) {
+        switch (type) {
+            case RANDOM:
+                return UUID::randomUUID;
+            case TIME_ORDERED:
+            default:
+                return TimeOrderedIdGenerator.INSTANCE;
+        }
+    }
+
+    public static Type configuredType() {
+        String value = System.getProperty(GENERATOR_PROPERTY, System.getenv(GENERATOR_ENV));
+        if (value == null || value.isEmpty()) {
+            return Type.TIME_ORDERED;
+        }
+        return Type.valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,162 @@
+package ecommerce.catalog;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent store of products keyed by UUID. Keys are kept as the two {@code long} halves of the UUID in an
+ * open-addressing table, so an entry costs 16 bytes of key and one reference instead of a 36 character
+ * {@code String} plus a hash map node.
+ *
+ * Reads never lock: a lookup probes the current table and reads each slot's value with volatile semantics, which
+ * publishes the key written before it. Writes are serialized; a full table is copied into one twice its size, which is
+ * then published for subsequent reads. Products cannot be removed, so a slot's key never changes once written.
+ *
+ * @param <P> the product type
+ */
+public final class ProductCatalog<P> {
+
+    private static final int MIN_CAPACITY = 16;
+    // Two longs per slot, so the key array stays within the maximum array length.
+    private static final int MAX_CAPACITY = 1 << 29;
+
+    private volatile Table table;
+    private volatile int size;
+
+    public ProductCatalog() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize number of products the catalog can hold before its table is resized
+     */
+    public ProductCatalog(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must not be negative");
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < MAX_CAPACITY && Table.threshold(capacity) < expectedSize) {
+            capacity <<= 1;
+        }
+        table = new Table(capacity);
+    }
+
+    /**
+     * Returns the product stored under {@code id}, or {@code null} if there is none or {@code id} is not a UUID.
+     */
+    public P get(String id) {
+        if (!Uuids.isCanonical(id)) {
+            return null;
+        }
+        return get(Uuids.mostSignificantBits(id), Uuids.leastSignificantBits(id));
+    }
+
+    @SuppressWarnings("unchecked")
+    public P get(long mostSigBits, long leastSigBits) {
+        Table t = table;
+        for (int slot = hash(mostSigBits, leastSigBits) & t.mask; ; slot = (slot + 1) & t.mask) {
+            Object value = t.values.get(slot);
+            if (value == null) {
+                return null;
+            }
+            if (t.keys[2 * slot] == mostSigBits && t.keys[2 * slot + 1] == leastSigBits) {
+                return (P) value;
+            }
+        }
+    }
+
+    /**
+     * Stores {@code product} under the UUID given by its two halves.
+     *
+     * @return the product previously stored under the UUID, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized P put(long mostSigBits, long leastSigBits, P product) {
+        Objects.requireNonNull(product, "product");
+        Table t = table;
+        int slot = findSlot(t, mostSigBits, leastSigBits);
+        Object previous = t.values.get(slot);
+        if (previous == null) {
+            if (size >= t.threshold) {
+                t = resize(t);
+                slot = findSlot(t, mostSigBits, leastSigBits);
+            }
+            t.keys[2 * slot] = mostSigBits;
+            t.keys[2 * slot + 1] = leastSigBits;
+            size++;
+        }
+        t.values.set(slot, product);
+        return (P) previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The slot holding the key, or the empty slot it would be stored in.
+     */
+    private static int findSlot(Table t, long mostSigBits, long leastSigBits) {
+        int slot = hash(mostSigBits, leastSigBits) & t.mask;
+        while (t.values.get(slot) != null
+                && (t.keys[2 * slot] != mostSigBits || t.keys[2 * slot + 1] != leastSigBits)) {
+            slot = (slot + 1) & t.mask;
+        }
+        return slot;
+    }
+
+    private Table resize(Table old) {
+        int capacity = old.mask + 1;
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Product catalog is full: " + size + " products");
+        }
+        Table resized = new Table(capacity << 1);
+        for (int i = 0; i < capacity; i++) {
+            Object value = old.values.get(i);
+            if (value != null) {
+                long mostSigBits = old.keys[2 * i];
+                long leastSigBits = old.keys[2 * i + 1];
+                int slot = findSlot(resized, mostSigBits, leastSigBits);
+                resized.keys[2 * slot] = mostSigBits;
+                resized.keys[2 * slot + 1] = leastSigBits;
+                // Published to readers by the volatile write of the table below.
+                resized.values.lazySet(slot, value);
+            }
+        }
+        table = resized;
+        return resized;
+    }
+
+    /**
+     * Spreads the bits of both halves, since time-ordered UUIDs share most of their high bits.
+     */
+    private static int hash(long mostSigBits, long leastSigBits) {
+        long h = mostSigBits * 0x9e3779b97f4a7c15L ^ leastSigBits;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static final class Table {
+        // The most and least significant bits of the key in slot i are at 2 * i and 2 * i + 1.
+        final long[] keys;
+        final AtomicReferenceArray<Object> values;
+        final int mask;
+        final int threshold;
+
+        Table(int capacity) {
+            keys = new long[2 * capacity];
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+            threshold = threshold(capacity);
+        }
+
+        /**
+         * Linear probing stays short up to three quarters full.
+         */
+        static int threshold(int capacity) {
+            return capacity - (capacity >>> 2);
+        }
+    }
+}
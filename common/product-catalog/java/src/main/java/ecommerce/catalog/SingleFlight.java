@@ -0,0 +1,81 @@
+package ecommerce.catalog;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Shares one in-flight load per key between all the calls that ask for it. The first call for a key starts the load;
+ * calls for the same key that arrive before it completes get the same future instead of starting their own. Once the
+ * load completes the key is forgotten, so the next call loads it again and never sees a stale value.
+ *
+ * Every caller attaches its own callbacks to the shared future, e.g. to answer its own gRPC call, and must not
+ * complete or cancel it.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+
+    /**
+     * Returns the future of the load of {@code key} in flight, or starts one with {@code loader}.
+     */
+    public CompletableFuture<V> load(K key, Function<? super K, CompletableFuture<V>> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> shared = inFlight.putIfAbsent(key, call);
+        if (shared != null) {
+            deduplicated.increment();
+            return shared;
+        }
+        loads.increment();
+        CompletableFuture<V> loaded;
+        try {
+            loaded = loader.apply(key);
+        } catch (RuntimeException e) {
+            loaded = new CompletableFuture<>();
+            loaded.completeExceptionally(e);
+        }
+        loaded.whenComplete((value, failure) -> {
+            // Forgotten before the callers run, so one that loads the key again starts a new load.
+            inFlight.remove(key, call);
+            if (failure != null) {
+                call.completeExceptionally(failure);
+            } else {
+                call.complete(value);
+            }
+        });
+        return call;
+    }
+
+    /**
+     * Number of loads started.
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * Number of calls that joined a load in flight instead of starting one.
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    /**
+     * Number of keys being loaded.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public String toString() {
+        return "loads " + getLoadCount() + ", deduplicated " + getDeduplicatedCount();
+    }
+}
@@ -0,0 +1,79 @@
+package ecommerce.catalog;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Version 7 UUIDs: a millisecond timestamp followed by a per-thread sequence and a tag identifying the thread.
+ * <pre>
+ *  48 bits  Unix time in milliseconds
+ *   4 bits  version, 7
+ *  12 bits  sequence, high bits
+ *   2 bits  variant
+ *  30 bits  sequence, low bits
+ *  32 bits  thread tag
+ * </pre>
+ * Each thread keeps its own clock reading and sequence, so generating an ID neither locks nor touches memory shared
+ * with other threads. The sequence starts at a random value every millisecond and counts up within it, so the IDs of
+ * one thread strictly increase and all IDs sort by the millisecond they were created in, both as UUIDs and as strings.
+ * If the clock goes back, a thread keeps counting from its last timestamp.
+ *
+ * Thread tags are a bijective mix of the thread ID and a random salt chosen at startup, so two threads of the same
+ * process never generate the same ID. IDs from different processes rely on the salt and the random sequence start,
+ * 73 random bits, to be unique.
+ */
+public final class TimeOrderedIdGenerator implements IdGenerator {
+
+    static final TimeOrderedIdGenerator INSTANCE = new TimeOrderedIdGenerator();
+
+    private static final long SEQUENCE_LIMIT = 1L << 42;
+    // Starting below half the limit leaves at least 2^41 IDs per millisecond.
+    private static final long SEQUENCE_START_BOUND = SEQUENCE_LIMIT >>> 1;
+
+    private final int salt = new SecureRandom().nextInt();
+    private final ThreadLocal<ThreadState> threadStates = ThreadLocal.withInitial(this::newThreadState);
+
+    @Override
+    public UUID nextId() {
+        ThreadState state = threadStates.get();
+        long millis = System.currentTimeMillis();
+        if (millis > state.millis) {
+            state.millis = millis;
+            state.sequence = ThreadLocalRandom.current().nextLong(SEQUENCE_START_BOUND);
+        } else if (++state.sequence == SEQUENCE_LIMIT) {
+            state.millis++;
+            state.sequence = ThreadLocalRandom.current().nextLong(SEQUENCE_START_BOUND);
+        }
+        long mostSigBits = state.millis << 16 | 0x7000L | state.sequence >>> 30;
+        long leastSigBits = 0x8000000000000000L | (state.sequence & 0x3fffffffL) << 32 | state.tag;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    @SuppressWarnings("deprecation") // Thread.threadId() is Java 19 or later.
+    private ThreadState newThreadState() {
+        return new ThreadState(mix((int) Thread.currentThread().getId() + salt) & 0xffffffffL);
+    }
+
+    /**
+     * Murmur3's finalizer, a bijection on ints.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static final class ThreadState {
+        final long tag;
+        long millis;
+        long sequence;
+
+        ThreadState(long tag) {
+            this.tag = tag;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ecommerce.catalog;
+
+import java.util.Arrays;
+
+/**
+ * Parses the canonical {@code 8-4-4-4-12} hex form of a UUID into its two halves without allocating, unlike
+ * {@link java.util.UUID#fromString}.
+ */
+public final class Uuids {
+
+    private static final int LENGTH = 36;
+    // A table rather than range checks: random hex digits would mispredict a branch on every other character.
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private Uuids() {
+    }
+
+    /**
+     * Returns whether {@code value} is a UUID in canonical form. Hex digits may be upper or lower case.
+     */
+    public static boolean isCanonical(CharSequence value) {
+        if (value == null || value.length() != LENGTH || value.charAt(8) != '-' || value.charAt(13) != '-'
+                || value.charAt(18) != '-' || value.charAt(23) != '-') {
+            return false;
+        }
+        // Any invalid digit makes its group, and so the result, negative.
+        return (parseGroup(value, 0) | parseGroup(value, 4) | parseGroup(value, 9) | parseGroup(value, 14)
+                | parseGroup(value, 19) | parseGroup(value, 24) | parseGroup(value, 28) | parseGroup(value, 32)) >= 0;
+    }
+
+    /**
+     * The most significant bits of a UUID in canonical form, see {@link #isCanonical}.
+     */
+    public static long mostSignificantBits(CharSequence value) {
+        return (long) parseGroup(value, 0) << 48 | (long) parseGroup(value, 4) << 32
+                | (long) parseGroup(value, 9) << 16 | parseGroup(value, 14);
+    }
+
+    /**
+     * The least significant bits of a UUID in canonical form, see {@link #isCanonical}.
+     */
+    public static long leastSignificantBits(CharSequence value) {
+        return (long) parseGroup(value, 19) << 48 | (long) parseGroup(value, 24) << 32
+                | (long) parseGroup(value, 28) << 16 | parseGroup(value, 32);
+    }
+
+    /**
+     * The four hex digits starting at {@code offset}, or a negative value if one of them is not a hex digit.
+     */
+    private static int parseGroup(CharSequence value, int offset) {
+        return hexValue(value.charAt(offset)) << 12 | hexValue(value.charAt(offset + 1)) << 8
+                | hexValue(value.charAt(offset + 2)) << 4 | hexValue(value.charAt(offset + 3));
+    }
+
+    private static int hexValue(char c) {
+        return c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+    }
+}
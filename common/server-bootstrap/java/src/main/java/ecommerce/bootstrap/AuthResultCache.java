@@ -0,0 +1,269 @@
+package ecommerce.bootstrap;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches credential verification results keyed by the raw {@code authorization} header value, so a channel that sends
+ * the same credentials on every call pays for verification once per TTL instead of once per call. A cache hit returns
+ * the already completed future, and concurrent calls with credentials that are still being verified share one
+ * verification.
+ *
+ * Valid results are kept for {@code ttl}, but never past the credentials' own expiry, and are refreshed asynchronously
+ * on {@code refreshExecutor} once three quarters of it has passed, so callers keep getting the cached result while a
+ * slow verification runs. The cache holds at most {@code maxEntries} valid results; when it is full, expired results
+ * are dropped first and then the oldest tenth of the rest, i.e. those closest to expiring. Results still being verified
+ * are never dropped.
+ *
+ * Invalid results are kept only for {@code negativeTtl}, in a separate cache of at most {@code maxNegativeEntries}
+ * that drops the oldest result when it is full. A client sending a different bogus header on every call therefore
+ * only churns the negative cache and never pushes valid results out. Verification errors are not cached at all.
+ */
+public class AuthResultCache {
+
+    private static final Logger logger = Logger.getLogger(AuthResultCache.class.getName());
+    // Far enough in the future that a pending verification never looks expired.
+    private static final long PENDING_NANOS = Long.MAX_VALUE / 2;
+    private static final CompletableFuture<VerifiedToken> INVALID = CompletableFuture.completedFuture(null);
+
+    private final Function<String, CompletableFuture<VerifiedToken>> verifier;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Executor refreshExecutor;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Guarded by itself. Every negative result lives for the same TTL, so insertion order is expiry order.
+    private final Map<String, Long> negativeExpiresAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * Creates a cache whose negative results are bounded to a tenth of {@code maxEntries}, and that refreshes valid
+     * results on the thread that completes the verifier's future.
+     */
+    public AuthResultCache(Function<String, CompletableFuture<VerifiedToken>> verifier, int maxEntries,
+                           Duration ttl, Duration negativeTtl) {
+        this(verifier, maxEntries, Math.max(1, maxEntries / 10), ttl, negativeTtl, Runnable::run);
+    }
+
+    public AuthResultCache(Function<String, CompletableFuture<VerifiedToken>> verifier, int maxEntries,
+                           int maxNegativeEntries, Duration ttl, Duration negativeTtl, Executor refreshExecutor) {
+        if (maxEntries < 1 || maxNegativeEntries < 1) {
+            throw new IllegalArgumentException("maxEntries and maxNegativeEntries must be positive");
+        }
+        this.verifier = verifier;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.refreshExecutor = refreshExecutor;
+        this.negativeExpiresAt = new LinkedHashMap<String, Long>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > maxNegativeEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the verified token for the credentials in {@code authorization}, completing with {@code null} if they
+     * are invalid.
+     */
+    public CompletableFuture<VerifiedToken> verify(String authorization) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(authorization);
+        if (entry != null && now - entry.expiresAt < 0) {
+            hits.increment();
+            if (now - entry.refreshAt >= 0 && entry.refreshing.compareAndSet(false, true)) {
+                refreshAsync(authorization);
+            }
+            return entry.result;
+        }
+        if (entry == null && isCachedInvalid(authorization, now)) {
+            hits.increment();
+            return INVALID;
+        }
+        if (entries.size() >= maxEntries && entry == null) {
+            evict();
+        }
+        Entry pending = new Entry(new CompletableFuture<>(), now + PENDING_NANOS, now + PENDING_NANOS);
+        Entry current = entries.compute(authorization,
+                (key, existing) -> existing != null && now - existing.expiresAt < 0 ? existing : pending);
+        if (current != pending) {
+            // Another call started verifying the same credentials first.
+            hits.increment();
+            return current.result;
+        }
+        misses.increment();
+        load(authorization).whenComplete((token, error) -> {
+            if (error != null) {
+                entries.remove(authorization, pending);
+                pending.result.completeExceptionally(error);
+            } else if (token == null) {
+                putInvalid(authorization);
+                entries.remove(authorization, pending);
+                pending.result.complete(null);
+            } else {
+                entries.replace(authorization, pending, completed(token));
+                pending.result.complete(token);
+            }
+        });
+        return pending.result;
+    }
+
+    private CompletableFuture<VerifiedToken> load(String authorization) {
+        try {
+            return verifier.apply(authorization);
+        } catch (RuntimeException e) {
+            CompletableFuture<VerifiedToken> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private Entry completed(VerifiedToken token) {
+        long now = System.nanoTime();
+        long ttl = ttlNanos;
+        if (token.getExpiresAtMillis() > 0) {
+            long untilExpiry = TimeUnit.MILLISECONDS.toNanos(token.getExpiresAtMillis() - System.currentTimeMillis());
+            ttl = Math.max(0, Math.min(ttl, untilExpiry));
+        }
+        return new Entry(CompletableFuture.completedFuture(token), now + ttl, now + ttl / 4 * 3);
+    }
+
+    private boolean isCachedInvalid(String authorization, long now) {
+        synchronized (negativeExpiresAt) {
+            Long expiresAt = negativeExpiresAt.get(authorization);
+            if (expiresAt == null) {
+                return false;
+            }
+            if (now - expiresAt < 0) {
+                return true;
+            }
+            negativeExpiresAt.remove(authorization);
+            return false;
+        }
+    }
+
+    private void putInvalid(String authorization) {
+        long expiresAt = System.nanoTime() + negativeTtlNanos;
+        synchronized (negativeExpiresAt) {
+            // Remove first, so the result moves to the young end of the insertion order.
+            negativeExpiresAt.remove(authorization);
+            negativeExpiresAt.put(authorization, expiresAt);
+        }
+    }
+
+    private void refreshAsync(String authorization) {
+        refreshes.increment();
+        CompletableFuture.supplyAsync(() -> load(authorization), refreshExecutor)
+                .thenCompose(Function.identity())
+                .whenComplete((token, error) -> {
+                    if (error != null) {
+                        // Keep serving the cached result until it expires, the next call after that verifies again.
+                        logger.log(Level.WARNING, "Credential refresh failed", error);
+                    } else if (token == null) {
+                        putInvalid(authorization);
+                        entries.remove(authorization);
+                    } else {
+                        entries.put(authorization, completed(token));
+                    }
+                });
+    }
+
+    /**
+     * Drops expired results and then the oldest ones. Only one caller sweeps at a time; the others go ahead, the cache
+     * may briefly hold a few more than {@code maxEntries} results.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            List<Map.Entry<String, Entry>> live = new ArrayList<>(entries.size());
+            for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+                if (now - candidate.getValue().expiresAt >= 0) {
+                    remove(candidate);
+                } else {
+                    live.add(candidate);
+                }
+            }
+            int toRemove = live.size() - (maxEntries - Math.max(1, maxEntries / 10));
+            if (toRemove <= 0) {
+                return;
+            }
+            // Pending verifications expire last, so they are never among the oldest.
+            live.sort(Comparator.comparingLong(candidate -> candidate.getValue().expiresAt - now));
+            for (int i = 0; i < toRemove; i++) {
+                remove(live.get(i));
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void remove(Map.Entry<String, Entry> candidate) {
+        // Leaves a result alone that was refreshed since the sweep saw it.
+        if (entries.remove(candidate.getKey(), candidate.getValue())) {
+            evictions.increment();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public String stats() {
+        int negativeSize;
+        synchronized (negativeExpiresAt) {
+            negativeSize = negativeExpiresAt.size();
+        }
+        return String.format("Auth cache : size %d, negative size %d, hits %d, misses %d, hit ratio %.3f, "
+                        + "refreshes %d, evictions %d", entries.size(), negativeSize, hits.sum(), misses.sum(),
+                getHitRatio(), refreshes.sum(), evictions.sum());
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<VerifiedToken> result;
+        private final long expiresAt;
+        private final long refreshAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(CompletableFuture<VerifiedToken> result, long expiresAt, long refreshAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+    }
+}
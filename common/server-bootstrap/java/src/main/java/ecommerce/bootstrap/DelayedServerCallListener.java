@@ -0,0 +1,75 @@
+package ecommerce.bootstrap;
+
+import io.grpc.ServerCall;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds back the listener events of a call until its real listener is known, e.g. while the call's credentials are
+ * verified asynchronously, then replays them in order.
+ */
+public class DelayedServerCallListener<ReqT> extends ServerCall.Listener<ReqT> {
+
+    private final Object lock = new Object();
+    // Guarded by lock, null once all pending events have been replayed.
+    private List<Runnable> pendingEvents = new ArrayList<>();
+    private volatile ServerCall.Listener<ReqT> listener;
+
+    /**
+     * Replays the events received so far to {@code realListener} and forwards all later events to it.
+     */
+    public void setListener(ServerCall.Listener<ReqT> realListener) {
+        listener = realListener;
+        while (true) {
+            List<Runnable> toRun;
+            synchronized (lock) {
+                if (pendingEvents.isEmpty()) {
+                    pendingEvents = null;
+                    return;
+                }
+                toRun = pendingEvents;
+                pendingEvents = new ArrayList<>();
+            }
+            // Events arriving while these run are queued and replayed in the next round, so order is kept.
+            for (Runnable event : toRun) {
+                event.run();
+            }
+        }
+    }
+
+    private void delayOrExecute(Runnable event) {
+        synchronized (lock) {
+            if (pendingEvents != null) {
+                pendingEvents.add(event);
+                return;
+            }
+        }
+        event.run();
+    }
+
+    @Override
+    public void onMessage(ReqT message) {
+        delayOrExecute(() -> listener.onMessage(message));
+    }
+
+    @Override
+    public void onHalfClose() {
+        delayOrExecute(() -> listener.onHalfClose());
+    }
+
+    @Override
+    public void onCancel() {
+        delayOrExecute(() -> listener.onCancel());
+    }
+
+    @Override
+    public void onComplete() {
+        delayOrExecute(() -> listener.onComplete());
+    }
+
+    @Override
+    public void onReady() {
+        delayOrExecute(() -> listener.onReady());
+    }
+}
@@ -0,0 +1,193 @@
+package ecommerce.bootstrap;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.ssl.ApplicationProtocolNegotiator;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+
+import java.io.File;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * A server {@link SslContext} that is rebuilt in the background when the certificate, key or trust files change, so
+ * certificates can be renewed without restarting the server. Established connections keep the context they were
+ * accepted with; new connections use the latest one. A change is applied once the files have stayed the same for one
+ * check interval, so a certificate and key that are replaced one after the other are picked up together. If the new
+ * files cannot be loaded the previous context stays in use.
+ *
+ * With OpenSSL, session tickets are encrypted with keys held here instead of by each context, so clients can resume
+ * their sessions across reloads. The key is rotated periodically; the previous key is kept to decrypt the tickets
+ * issued before the rotation.
+ */
+public final class ReloadingSslContext extends SslContext {
+
+    private static final Logger logger = Logger.getLogger(ReloadingSslContext.class.getName());
+    private static final SecureRandom random = new SecureRandom();
+
+    private final ServerTlsConfig config;
+    private final ScheduledExecutorService scheduler;
+    private volatile SslContext current;
+    private OpenSslSessionTicketKey[] ticketKeys;
+    private List<Long> loadedVersion;
+    private List<Long> lastSeenVersion;
+
+    public ReloadingSslContext(ServerTlsConfig config) throws SSLException {
+        this.config = config;
+        this.ticketKeys = new OpenSslSessionTicketKey[]{newTicketKey()};
+        this.loadedVersion = fileVersion();
+        this.lastSeenVersion = loadedVersion;
+        this.current = config.newSslContext(ticketKeys);
+        logger.info("TLS provider: " + config.sslProvider() + ", ciphers: " + current.cipherSuites());
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tls-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long reloadInterval = config.getReloadIntervalSeconds();
+        if (reloadInterval > 0) {
+            scheduler.scheduleWithFixedDelay(this::reloadIfChanged, reloadInterval, reloadInterval, TimeUnit.SECONDS);
+        }
+        long rotationInterval = config.getTicketKeyRotationSeconds();
+        if (rotationInterval > 0) {
+            scheduler.scheduleAtFixedRate(this::rotateTicketKey, rotationInterval, rotationInterval,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops watching the files and rotating the ticket key.
+     */
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * The context new connections are accepted with.
+     */
+    public SslContext current() {
+        return current;
+    }
+
+    synchronized void reloadIfChanged() {
+        List<Long> version = fileVersion();
+        boolean settled = version.equals(lastSeenVersion);
+        lastSeenVersion = version;
+        if (!settled || version.equals(loadedVersion)) {
+            return;
+        }
+        try {
+            current = config.newSslContext(ticketKeys);
+            logger.info("Reloaded the TLS certificate and key from " + config.watchedFiles());
+        } catch (SSLException | RuntimeException e) {
+            logger.log(Level.WARNING, "Could not reload the TLS certificate and key from " + config.watchedFiles()
+                    + ", keeping the previous ones", e);
+        }
+        // A broken file is not loaded again until it changes.
+        loadedVersion = version;
+    }
+
+    synchronized void rotateTicketKey() {
+        ticketKeys = new OpenSslSessionTicketKey[]{newTicketKey(), ticketKeys[0]};
+        SSLSessionContext sessionContext = current.sessionContext();
+        if (sessionContext instanceof OpenSslSessionContext) {
+            ((OpenSslSessionContext) sessionContext).setTicketKeys(ticketKeys);
+        }
+    }
+
+    private List<Long> fileVersion() {
+        List<File> files = config.watchedFiles();
+        Long[] version = new Long[files.size() * 2];
+        for (int i = 0; i < files.size(); i++) {
+            version[2 * i] = files.get(i).lastModified();
+            version[2 * i + 1] = files.get(i).length();
+        }
+        return Arrays.asList(version);
+    }
+
+    private static OpenSslSessionTicketKey newTicketKey() {
+        byte[] name = new byte[OpenSslSessionTicketKey.NAME_SIZE];
+        byte[] hmacKey = new byte[OpenSslSessionTicketKey.HMAC_KEY_SIZE];
+        byte[] aesKey = new byte[OpenSslSessionTicketKey.AES_KEY_SIZE];
+        random.nextBytes(name);
+        random.nextBytes(hmacKey);
+        random.nextBytes(aesKey);
+        return new OpenSslSessionTicketKey(name, hmacKey, aesKey);
+    }
+
+    @Override
+    public boolean isClient() {
+        return false;
+    }
+
+    @Override
+    public List<String> cipherSuites() {
+        return current.cipherSuites();
+    }
+
+    @Override
+    public long sessionCacheSize() {
+        return current.sessionCacheSize();
+    }
+
+    @Override
+    public long sessionTimeout() {
+        return current.sessionTimeout();
+    }
+
+    // Deprecated in Netty, but still an abstract member of SslContext that has to be delegated.
+    @SuppressWarnings("deprecation")
+    @Override
+    public ApplicationProtocolNegotiator applicationProtocolNegotiator() {
+        return current.applicationProtocolNegotiator();
+    }
+
+    @Override
+    public SSLEngine newEngine(ByteBufAllocator alloc) {
+        return current.newEngine(alloc);
+    }
+
+    @Override
+    public SSLEngine newEngine(ByteBufAllocator alloc, String peerHost, int peerPort) {
+        return current.newEngine(alloc, peerHost, peerPort);
+    }
+
+    @Override
+    public SSLSessionContext sessionContext() {
+        return current.sessionContext();
+    }
+
+    @Override
+    protected SslHandler newHandler(ByteBufAllocator alloc, boolean startTls) {
+        return current.newHandler(alloc);
+    }
+
+    @Override
+    protected SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort, boolean startTls) {
+        return current.newHandler(alloc, peerHost, peerPort);
+    }
+
+    @Override
+    protected SslHandler newHandler(ByteBufAllocator alloc, boolean startTls, Executor executor) {
+        return current.newHandler(alloc, executor);
+    }
+
+    @Override
+    protected SslHandler newHandler(ByteBufAllocator alloc, String peerHost, int peerPort, boolean startTls,
+                                    Executor executor) {
+        return current.newHandler(alloc, peerHost, peerPort, executor);
+    }
+}
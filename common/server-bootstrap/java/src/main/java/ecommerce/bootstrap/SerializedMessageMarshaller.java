@@ -0,0 +1,105 @@
+package ecommerce.bootstrap;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Marshals messages that are already serialized, e.g. kept by a server in their encoded form. The transport gets the
+ * bytes as a {@link KnownLength} and {@link Drainable} stream, so it sizes the frame up front and copies the bytes into
+ * it in one pass, without a protobuf message in between.
+ *
+ * Heap buffers are written to the transport as they are. Direct buffers, e.g. from an off-heap store, can't be handed
+ * to an {@code OutputStream} directly, so their bytes are copied through a per-thread heap chunk on the way: one more
+ * copy than a heap buffer, but no allocation per message.
+ *
+ * @see SerializedResponses
+ */
+public final class SerializedMessageMarshaller implements MethodDescriptor.Marshaller<ByteBuffer> {
+
+    public static final SerializedMessageMarshaller INSTANCE = new SerializedMessageMarshaller();
+
+    private static final int CHUNK_BYTES = 8192;
+    // Drained into right away and never handed out, so one chunk per thread is enough.
+    private static final ThreadLocal<byte[]> DRAIN_CHUNK = ThreadLocal.withInitial(() -> new byte[CHUNK_BYTES]);
+
+    private SerializedMessageMarshaller() {
+    }
+
+    @Override
+    public InputStream stream(ByteBuffer value) {
+        return new SerializedMessageStream(value.duplicate());
+    }
+
+    @Override
+    public ByteBuffer parse(InputStream stream) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(32, stream.available()));
+            byte[] chunk = new byte[CHUNK_BYTES];
+            int read;
+            while ((read = stream.read(chunk)) != -1) {
+                bytes.write(chunk, 0, read);
+            }
+            return ByteBuffer.wrap(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class SerializedMessageStream extends InputStream implements KnownLength, Drainable {
+
+        private final ByteBuffer buffer;
+
+        SerializedMessageStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            int length = buffer.remaining();
+            if (buffer.hasArray()) {
+                target.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                buffer.position(buffer.limit());
+                return length;
+            }
+            // Direct memory has to go through the heap to reach an OutputStream.
+            byte[] chunk = DRAIN_CHUNK.get();
+            while (buffer.hasRemaining()) {
+                int count = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, count);
+                target.write(chunk, 0, count);
+            }
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ecommerce.bootstrap;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.stub.ServerCalls;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serves unary methods from responses that are already serialized.
+ *
+ * A service that keeps its responses encoded, e.g. the products or orders it stores, binds such methods to a handler
+ * that returns the encoded bytes. They are written to the wire with the {@link SerializedMessageMarshaller}, so repeated
+ * reads of the same value skip protobuf serialization. Clients see the same method and message types as before.
+ */
+public final class SerializedResponses {
+
+    private SerializedResponses() {
+    }
+
+    /**
+     * Returns the service with {@code method} bound to {@code handler}, whose responses are serialized messages of the
+     * method's response type. The other methods keep their bindings.
+     */
+    public static <ReqT> ServerServiceDefinition bindUnary(ServerServiceDefinition service,
+                                                           MethodDescriptor<ReqT, ?> method,
+                                                           ServerCalls.UnaryMethod<ReqT, ByteBuffer> handler) {
+        if (service.getMethod(method.getFullMethodName()) == null) {
+            throw new IllegalArgumentException(service.getServiceDescriptor().getName() + " has no method "
+                    + method.getFullMethodName());
+        }
+        MethodDescriptor<ReqT, ByteBuffer> serializedMethod = method
+                .toBuilder(method.getRequestMarshaller(), SerializedMessageMarshaller.INSTANCE)
+                .build();
+        ServiceDescriptor generated = service.getServiceDescriptor();
+        ServiceDescriptor.Builder descriptor = ServiceDescriptor.newBuilder(generated.getName())
+                .setSchemaDescriptor(generated.getSchemaDescriptor());
+        for (MethodDescriptor<?, ?> existing : generated.getMethods()) {
+            descriptor.addMethod(existing.getFullMethodName().equals(method.getFullMethodName())
+                    ? serializedMethod : existing);
+        }
+        ServerServiceDefinition.Builder definition = ServerServiceDefinition.builder(descriptor.build());
+        for (ServerMethodDefinition<?, ?> existing : service.getMethods()) {
+            if (!existing.getMethodDescriptor().getFullMethodName().equals(method.getFullMethodName())) {
+                definition.addMethod(existing);
+            }
+        }
+        definition.addMethod(serializedMethod, ServerCalls.asyncUnaryCall(handler));
+        return definition.build();
+    }
+}
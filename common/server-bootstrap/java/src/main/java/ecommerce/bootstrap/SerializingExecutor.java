@@ -0,0 +1,59 @@
+package ecommerce.bootstrap;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs tasks one at a time, in submission order, on a shared delegate executor. Work that completes on another pool,
+ * e.g. an asynchronous credential check, can hop back to a call's executor this way without racing the call's other
+ * callbacks.
+ */
+public final class SerializingExecutor implements Executor {
+
+    private static final Logger logger = Logger.getLogger(SerializingExecutor.class.getName());
+
+    private final Executor delegate;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public SerializingExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (running.compareAndSet(false, true)) {
+            try {
+                delegate.execute(this::drain);
+            } catch (RuntimeException e) {
+                running.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Exception while running serialized task " + task, e);
+            }
+        }
+        running.set(false);
+        // A task added after the last poll but before the flag was cleared would otherwise wait for the next one.
+        if (!tasks.isEmpty()) {
+            schedule();
+        }
+    }
+}
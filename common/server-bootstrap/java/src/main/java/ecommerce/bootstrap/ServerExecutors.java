@@ -0,0 +1,141 @@
+package ecommerce.bootstrap;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.ServerBuilder;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Chooses the executor that runs the call handlers of a gRPC server.
+ *
+ * The executor is selected with the {@code grpc.server.executor} system property or the
+ * {@code GRPC_SERVER_EXECUTOR} environment variable:
+ * <ul>
+ *     <li>{@code default} - gRPC's shared cached thread pool, one platform thread per blocked handler.</li>
+ *     <li>{@code virtual} - a new virtual thread per call (Java 21 or later). Blocking handlers park the virtual
+ *     thread instead of pinning a platform thread.</li>
+ *     <li>{@code forkjoin} - a ForkJoinPool bounded by {@code grpc.server.executor.parallelism}
+ *     (defaults to the number of processors). Suited to handlers that never block.</li>
+ *     <li>{@code direct} - handlers run on the transport threads. Only safe for handlers that never block.</li>
+ * </ul>
+ */
+public final class ServerExecutors {
+
+    private static final Logger logger = Logger.getLogger(ServerExecutors.class.getName());
+
+    public static final String EXECUTOR_PROPERTY = "grpc.server.executor";
+    public static final String EXECUTOR_ENV = "GRPC_SERVER_EXECUTOR";
+    public static final String PARALLELISM_PROPERTY = "grpc.server.executor.parallelism";
+
+    public enum Type {
+        DEFAULT, VIRTUAL, FORKJOIN, DIRECT
+    }
+
+    private ServerExecutors() {
+    }
+
+    /**
+     * Applies the configured executor to the builder. The virtual and forkjoin executors it creates are never shut
+     * down and live as long as the process, like gRPC's shared pool; a server that stops before the process exits
+     * should use {@link #newExecutor} instead.
+     */
+    public static <T extends ServerBuilder<?>> T configure(T builder) {
+        return configure(builder, configuredType());
+    }
+
+    public static <T extends ServerBuilder<?>> T configure(T builder, Type type) {
+        if (type != Type.DEFAULT) {
+            // DEFAULT keeps gRPC's shared pool, which gRPC releases itself once the server has terminated.
+            builder.executor(createExecutor(type));
+        }
+        logType(type);
+        return builder;
+    }
+
+    /**
+     * Creates the configured executor for a server that also needs it outside of gRPC, e.g. to hop back from
+     * another pool onto the call executor. Pass the result to {@code ServerBuilder.executor}. The caller owns the
+     * executor and shuts it down with {@link #shutdown} once the server has terminated.
+     */
+    public static Executor newExecutor() {
+        return newExecutor(configuredType());
+    }
+
+    public static Executor newExecutor(Type type) {
+        Executor executor = createExecutor(type);
+        logType(type);
+        return executor;
+    }
+
+    /**
+     * Shuts down an executor returned by {@link #newExecutor} and waits for its running handlers to finish.
+     */
+    public static void shutdown(Executor executor, long timeout, TimeUnit unit) throws InterruptedException {
+        if (executor instanceof ExecutorService) {
+            ExecutorService executorService = (ExecutorService) executor;
+            executorService.shutdown();
+            if (!executorService.awaitTermination(timeout, unit)) {
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    private static Executor createExecutor(Type type) {
+        switch (type) {
+            case VIRTUAL:
+                return newVirtualThreadPerTaskExecutor();
+            case FORKJOIN:
+                return newForkJoinPool(Integer.getInteger(PARALLELISM_PROPERTY,
+                        Runtime.getRuntime().availableProcessors()));
+            case DIRECT:
+                // The same instance ServerBuilder.directExecutor() sets, which gRPC recognizes to skip the hop off
+                // the transport thread.
+                return MoreExecutors.directExecutor();
+            case DEFAULT:
+            default:
+                // Like gRPC's shared executor: a cached pool of daemon threads.
+                AtomicInteger threadCount = new AtomicInteger();
+                return Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "grpc-server-executor-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+    }
+
+    private static void logType(Type type) {
+        logger.info("Call handlers run on the " + type.name().toLowerCase(Locale.ROOT) + " executor");
+    }
+
+    public static Type configuredType() {
+        String value = System.getProperty(EXECUTOR_PROPERTY, System.getenv(EXECUTOR_ENV));
+        if (value == null || value.isEmpty()) {
+            return Type.DEFAULT;
+        }
+        return Type.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public static Executor newForkJoinPool(int parallelism) {
+        return new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    /**
+     * Calls {@code Executors.newVirtualThreadPerTaskExecutor()} reflectively, so the samples still compile for older
+     * Java versions.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later, running on "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+}
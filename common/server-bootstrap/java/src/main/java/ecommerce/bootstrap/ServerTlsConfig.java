@@ -0,0 +1,178 @@
+package ecommerce.bootstrap;
+
+import io.grpc.netty.GrpcSslContexts;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.net.ssl.SSLException;
+
+/**
+ * TLS settings of the server. Every setting can be overridden with a {@code productinfo.tls.*} system property, e.g.
+ * {@code -Dproductinfo.tls.provider=jdk}.
+ */
+public class ServerTlsConfig {
+
+    /**
+     * The TLS 1.3 cipher suites followed by the TLS 1.2 ones gRPC accepts for HTTP/2. gRPC's own list does not include
+     * TLS 1.3 suites yet, so TLS 1.3 could not be negotiated with it.
+     */
+    public static final List<String> DEFAULT_CIPHERS;
+
+    static {
+        List<String> ciphers = new ArrayList<>(Arrays.asList(
+                "TLS_AES_128_GCM_SHA256", "TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256"));
+        ciphers.addAll(Http2SecurityUtil.CIPHERS);
+        DEFAULT_CIPHERS = Collections.unmodifiableList(ciphers);
+    }
+
+    public enum Provider {
+        /** OpenSSL (BoringSSL from netty-tcnative) when it can be loaded, the JDK otherwise. */
+        AUTO,
+        OPENSSL,
+        JDK
+    }
+
+    private final File certChainFile;
+    private final File privateKeyFile;
+    private final File trustCertCollectionFile;
+    private final ClientAuth clientAuth;
+    private final Provider provider;
+    private final List<String> ciphers;
+    private final List<String> protocols;
+    private final long sessionCacheSize;
+    private final long sessionTimeoutSeconds;
+    private final long ticketKeyRotationSeconds;
+    private final long reloadIntervalSeconds;
+
+    /**
+     * @param trustCertCollectionFile  CA certificates client certificates are verified against, or {@code null} if
+     *                                 clients are not authenticated
+     * @param ciphers                  cipher suites in order of preference, or {@code null} for
+     *                                 {@link #DEFAULT_CIPHERS}
+     * @param protocols                enabled protocols, e.g. {@code TLSv1.3}, or {@code null} for the provider's
+     *                                 defaults
+     * @param sessionCacheSize         maximum number of sessions kept for resumption by session ID
+     * @param sessionTimeoutSeconds    how long a session can be resumed, by session ID or ticket
+     * @param ticketKeyRotationSeconds how often the session ticket key is replaced. 0 disables rotation.
+     * @param reloadIntervalSeconds    how often the certificate, key and trust files are checked for changes.
+     *                                 0 disables reloading.
+     */
+    public ServerTlsConfig(File certChainFile, File privateKeyFile, File trustCertCollectionFile,
+                           ClientAuth clientAuth, Provider provider, List<String> ciphers, List<String> protocols,
+                           long sessionCacheSize, long sessionTimeoutSeconds, long ticketKeyRotationSeconds,
+                           long reloadIntervalSeconds) {
+        if (sessionCacheSize < 0 || sessionTimeoutSeconds < 0 || ticketKeyRotationSeconds < 0
+                || reloadIntervalSeconds < 0) {
+            throw new IllegalArgumentException(
+                    "session cache size, session timeout, ticket key rotation and reload interval must not be negative");
+        }
+        this.certChainFile = certChainFile;
+        this.privateKeyFile = privateKeyFile;
+        this.trustCertCollectionFile = trustCertCollectionFile;
+        this.clientAuth = clientAuth;
+        this.provider = provider;
+        this.ciphers = ciphers != null ? ciphers : DEFAULT_CIPHERS;
+        this.protocols = protocols;
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeoutSeconds = sessionTimeoutSeconds;
+        this.ticketKeyRotationSeconds = ticketKeyRotationSeconds;
+        this.reloadIntervalSeconds = reloadIntervalSeconds;
+    }
+
+    public static ServerTlsConfig fromSystemProperties(File certChainFile, File privateKeyFile,
+                                                       File trustCertCollectionFile, ClientAuth clientAuth) {
+        return new ServerTlsConfig(
+                certChainFile,
+                privateKeyFile,
+                trustCertCollectionFile,
+                clientAuth,
+                Provider.valueOf(System.getProperty("productinfo.tls.provider", "auto").toUpperCase(Locale.ROOT)),
+                parseList(System.getProperty("productinfo.tls.ciphers")),
+                parseList(System.getProperty("productinfo.tls.protocols")),
+                Long.getLong("productinfo.tls.sessionCacheSize", 20480),
+                Long.getLong("productinfo.tls.sessionTimeoutSeconds", 3600),
+                Long.getLong("productinfo.tls.ticketKeyRotationSeconds", 12 * 3600),
+                Long.getLong("productinfo.tls.reloadIntervalSeconds", 60));
+    }
+
+    private static List<String> parseList(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return Arrays.asList(value.trim().split("\\s*,\\s*"));
+    }
+
+    /**
+     * The provider {@link #newSslContext} builds contexts with.
+     *
+     * @throws IllegalStateException if OpenSSL was requested but netty-tcnative could not be loaded
+     */
+    public SslProvider sslProvider() {
+        switch (provider) {
+            case OPENSSL:
+                if (!OpenSsl.isAvailable()) {
+                    throw new IllegalStateException("OpenSSL was requested but netty-tcnative could not be loaded",
+                            OpenSsl.unavailabilityCause());
+                }
+                return SslProvider.OPENSSL;
+            case JDK:
+                return SslProvider.JDK;
+            case AUTO:
+            default:
+                return OpenSsl.isAvailable() ? SslProvider.OPENSSL : SslProvider.JDK;
+        }
+    }
+
+    /**
+     * Builds a context from the current contents of the certificate, key and trust files. The ticket keys are only
+     * used by OpenSSL; the JDK manages its own.
+     */
+    public SslContext newSslContext(OpenSslSessionTicketKey... ticketKeys) throws SSLException {
+        SslContextBuilder builder = GrpcSslContexts.configure(
+                SslContextBuilder.forServer(certChainFile, privateKeyFile), sslProvider())
+                .sessionCacheSize(sessionCacheSize)
+                .sessionTimeout(sessionTimeoutSeconds);
+        if (trustCertCollectionFile != null) {
+            builder.trustManager(trustCertCollectionFile).clientAuth(clientAuth);
+        }
+        builder.ciphers(ciphers, SupportedCipherSuiteFilter.INSTANCE);
+        if (protocols != null) {
+            builder.protocols(protocols.toArray(new String[0]));
+        }
+        SslContext context = builder.build();
+        if (ticketKeys.length > 0 && context.sessionContext() instanceof OpenSslSessionContext) {
+            ((OpenSslSessionContext) context.sessionContext()).setTicketKeys(ticketKeys);
+        }
+        return context;
+    }
+
+    /**
+     * The files the server's certificate, key and trusted CAs are read from.
+     */
+    public List<File> watchedFiles() {
+        return trustCertCollectionFile == null
+                ? Arrays.asList(certChainFile, privateKeyFile)
+                : Arrays.asList(certChainFile, privateKeyFile, trustCertCollectionFile);
+    }
+
+    public long getTicketKeyRotationSeconds() {
+        return ticketKeyRotationSeconds;
+    }
+
+    public long getReloadIntervalSeconds() {
+        return reloadIntervalSeconds;
+    }
+}
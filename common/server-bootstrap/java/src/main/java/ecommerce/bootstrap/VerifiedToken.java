@@ -0,0 +1,26 @@
+package ecommerce.bootstrap;
+
+/**
+ * The principal that valid credentials, e.g. a bearer token or a user name and password, belong to.
+ */
+public final class VerifiedToken {
+
+    private final String userId;
+    private final long expiresAtMillis;
+
+    /**
+     * @param expiresAtMillis epoch millis after which the credentials are no longer valid, or 0 if they don't expire
+     */
+    public VerifiedToken(String userId, long expiresAtMillis) {
+        this.userId = userId;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+}
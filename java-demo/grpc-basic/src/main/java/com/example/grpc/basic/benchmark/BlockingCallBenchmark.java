@@ -0,0 +1,161 @@
+package com.example.grpc.basic.benchmark;
+
+import com.example.grpc.basic.HelloRequest;
+import com.example.grpc.basic.HelloResponse;
+import com.example.grpc.basic.HelloServiceGrpc;
+import com.example.grpc.common.ServerExecutors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对比不同服务端执行器在大量并发阻塞调用下的表现：同时发起 N 个一元调用，服务方法在处理线程上阻塞（sleep）一段时间。
+ * 输出每种执行器的 p50/p99/最大延迟、峰值线程数、峰值堆内存和峰值 RSS（平台线程的栈内存不在堆上，只体现在 RSS 中）。
+ *
+ * 参数: [执行器列表，默认 default,virtual] [并发调用数，默认 10000] [每次调用阻塞的毫秒数，默认 100]
+ * virtual 需要使用 Java 21+ 运行，否则会被跳过。forkjoin 和 direct 也可以加入列表，但它们的线程数有限，
+ * 阻塞调用只能排队执行，总耗时约为 调用数 x 阻塞时间 / 线程数。
+ * 每轮结束后会关闭该轮的执行器，但 default 使用的 gRPC 共享线程池中的空闲线程要过一段时间才会回收，
+ * 会计入下一轮的峰值线程数，需要精确对比时每次只测一种执行器。
+ */
+public class BlockingCallBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String[] types = (args.length > 0 ? args[0] : "default,virtual").split(",");
+        int calls = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        long blockMillis = args.length > 2 ? Long.parseLong(args[2]) : 100;
+
+        for (String type : types) {
+            ServerExecutors.Type executorType = ServerExecutors.Type.valueOf(type.trim().toUpperCase(Locale.ROOT));
+            try {
+                run(executorType, calls, blockMillis);
+            } catch (IllegalStateException e) {
+                System.out.println(type + ": skipped, " + e.getMessage());
+            }
+            System.gc();
+        }
+    }
+
+    private static void run(ServerExecutors.Type executorType, int calls, long blockMillis) throws Exception {
+        // 自己创建执行器而不是用 configure，这样每轮结束后可以关闭它，不会把线程池泄漏到后面几轮
+        Executor executor = ServerExecutors.newExecutor(executorType);
+        Server server = ServerExecutors.configure(ServerBuilder.forPort(0), executorType, executor)
+                .addService(new BlockingHelloService(blockMillis))
+                .build()
+                .start();
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort())
+                .usePlaintext()
+                .directExecutor()
+                .build();
+        HelloServiceGrpc.HelloServiceStub stub = HelloServiceGrpc.newStub(channel);
+        // 预热连接
+        HelloServiceGrpc.newBlockingStub(channel).sayHello(HelloRequest.newBuilder().setName("warmup").build());
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        threads.resetPeakThreadCount();
+        AtomicLong peakHeap = new AtomicLong();
+        AtomicLong peakRss = new AtomicLong();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> {
+            peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            peakRss.accumulateAndGet(residentSetSize(), Math::max);
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        long[] latencies = new long[calls];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(calls);
+        HelloRequest request = HelloRequest.newBuilder().setName("benchmark").build();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            int index = i;
+            long callStart = System.nanoTime();
+            stub.sayHello(request, new StreamObserver<HelloResponse>() {
+                @Override
+                public void onNext(HelloResponse value) {
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    failures.incrementAndGet();
+                    latencies[index] = System.nanoTime() - callStart;
+                    done.countDown();
+                }
+
+                @Override
+                public void onCompleted() {
+                    latencies[index] = System.nanoTime() - callStart;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        sampler.shutdownNow();
+
+        Arrays.sort(latencies);
+        System.out.printf("%-8s calls=%d failures=%d time=%dms p50=%dms p99=%dms max=%dms peakThreads=%d peakHeap=%dMB peakRss=%dMB%n",
+                executorType.name().toLowerCase(Locale.ROOT), calls, failures.get(), elapsedMillis,
+                millis(latencies[calls / 2]), millis(latencies[Math.max(0, (int) (calls * 0.99) - 1)]), millis(latencies[calls - 1]),
+                threads.getPeakThreadCount(), peakHeap.get() / (1024 * 1024), peakRss.get() / (1024 * 1024));
+
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        ServerExecutors.shutdown(executor, 5, TimeUnit.SECONDS);
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    // 读取 Linux 下进程的常驻内存（VmRSS），其他系统返回 0
+    private static long residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (Exception e) {
+            // 不支持时忽略
+        }
+        return 0;
+    }
+
+    // 在处理线程上阻塞的服务，模拟调用慢速下游
+    private static class BlockingHelloService extends HelloServiceGrpc.HelloServiceImplBase {
+        private final long blockMillis;
+
+        BlockingHelloService(long blockMillis) {
+            this.blockMillis = blockMillis;
+        }
+
+        @Override
+        public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+            try {
+                Thread.sleep(blockMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            responseObserver.onNext(HelloResponse.newBuilder().setMessage("Hello, " + request.getName() + "!").build());
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.grpc.basic.server;
 import com.example.grpc.basic.HelloRequest;
 import com.example.grpc.basic.HelloResponse;
 import com.example.grpc.basic.HelloServiceGrpc;
+import com.example.grpc.common.ServerExecutors;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.stub.StreamObserver;
@@ -15,7 +16,7 @@ public class HelloServer {
 
     private void start() throws IOException {
         int port = 50051;
-        server = ServerBuilder.forPort(port)
+        server = ServerExecutors.configure(ServerBuilder.forPort(port))
                 .addService(new HelloServiceImpl())
                 .build()
                 .start();
@@ -50,7 +51,7 @@ public class HelloServer {
     }
 
     // 实现服务
-    static class HelloServiceImpl extends HelloServiceGrpc.HelloServiceImplBase {
+    public static class HelloServiceImpl extends HelloServiceGrpc.HelloServiceImplBase {
         @Override
         public void sayHello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
             // 接收请求
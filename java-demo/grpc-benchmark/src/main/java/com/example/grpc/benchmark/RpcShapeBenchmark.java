@@ -0,0 +1,185 @@
+package com.example.grpc.benchmark;
+
+import com.example.grpc.basic.HelloRequest;
+import com.example.grpc.basic.HelloResponse;
+import com.example.grpc.basic.HelloServiceGrpc;
+import com.example.grpc.basic.server.HelloServer;
+import com.example.grpc.bistream.ChatRequest;
+import com.example.grpc.bistream.ChatResponse;
+import com.example.grpc.bistream.ChatServiceGrpc;
+import com.example.grpc.bistream.server.ChatServer;
+import com.example.grpc.clientstream.AverageResponse;
+import com.example.grpc.clientstream.AverageServiceGrpc;
+import com.example.grpc.clientstream.NumberMessage;
+import com.example.grpc.clientstream.server.AverageServer;
+import com.example.grpc.serverstream.NumberRequest;
+import com.example.grpc.serverstream.NumberResponse;
+import com.example.grpc.serverstream.NumberServiceGrpc;
+import com.example.grpc.serverstream.server.NumberServer;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 四种通信模式的基准测试：一元（sayHello）、服务端流（getNumbers）、客户端流（calculateAverage）、双向流（chat）。
+ * 分别使用进程内（inprocess）和本地回环 Netty（netty）两种传输层。
+ *
+ * 同时输出吞吐量（Throughput）和延迟分位数（SampleTime）。加上 {@code -prof gc} 可以得到每次操作的内存分配量
+ * （gc.alloc.rate.norm），只看 ops/s 时使用 {@code -bm thrpt -tu s}:
+ * <pre>
+ * java -jar grpc-benchmark/target/benchmarks.jar RpcShapeBenchmark -prof gc
+ * java -jar grpc-benchmark/target/benchmarks.jar RpcShapeBenchmark -bm thrpt -tu s
+ * </pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RpcShapeBenchmark {
+
+    @Param({"inprocess", "netty"})
+    public String transport;
+
+    // 每个流式调用发送或接收的消息数
+    @Param({"100"})
+    public int messagesPerStream;
+
+    private PrintStream originalOut;
+    private Server server;
+    private ManagedChannel channel;
+    private HelloServiceGrpc.HelloServiceBlockingStub helloStub;
+    private NumberServiceGrpc.NumberServiceBlockingStub numberStub;
+    private AverageServiceGrpc.AverageServiceStub averageStub;
+    private ChatServiceGrpc.ChatServiceStub chatStub;
+
+    private final HelloRequest helloRequest = HelloRequest.newBuilder().setName("benchmark").build();
+    private NumberRequest numberRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // 示例服务对每条消息都会 println，这里丢弃输出，避免控制台 I/O 主导测试结果
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        ServerBuilder<?> serverBuilder;
+        if ("inprocess".equals(transport)) {
+            String name = InProcessServerBuilder.generateName();
+            serverBuilder = InProcessServerBuilder.forName(name);
+            channel = InProcessChannelBuilder.forName(name).build();
+        } else {
+            serverBuilder = ServerBuilder.forPort(0);
+        }
+        server = serverBuilder
+                .addService(new HelloServer.HelloServiceImpl())
+                .addService(new NumberServer.NumberServiceImpl())
+                .addService(new AverageServer.AverageServiceImpl())
+                .addService(new ChatServer.ChatServiceImpl())
+                .build()
+                .start();
+        if (channel == null) {
+            channel = ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+        }
+
+        helloStub = HelloServiceGrpc.newBlockingStub(channel);
+        numberStub = NumberServiceGrpc.newBlockingStub(channel);
+        averageStub = AverageServiceGrpc.newStub(channel);
+        chatStub = ChatServiceGrpc.newStub(channel);
+        numberRequest = NumberRequest.newBuilder().setStart(1).setEnd(messagesPerStream).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        System.setOut(originalOut);
+    }
+
+    // 一元 RPC
+    @Benchmark
+    public HelloResponse unarySayHello() {
+        return helloStub.sayHello(helloRequest);
+    }
+
+    // 服务端流：接收 messagesPerStream 个数字
+    @Benchmark
+    public void serverStreamingGetNumbers(Blackhole blackhole) {
+        Iterator<NumberResponse> responses = numberStub.getNumbers(numberRequest);
+        while (responses.hasNext()) {
+            blackhole.consume(responses.next());
+        }
+    }
+
+    // 客户端流：发送 messagesPerStream 个数字，等待平均值
+    @Benchmark
+    public AverageResponse clientStreamingCalculateAverage() throws Exception {
+        ResponseFuture<AverageResponse> response = new ResponseFuture<>();
+        StreamObserver<NumberMessage> requests = averageStub.calculateAverage(response);
+        for (int i = 0; i < messagesPerStream; i++) {
+            requests.onNext(NumberMessage.newBuilder().setNumber(i).build());
+        }
+        requests.onCompleted();
+        return response.get();
+    }
+
+    // 双向流：发送 messagesPerStream 条消息，等待所有回复
+    @Benchmark
+    public ChatResponse bidiStreamingChat() throws Exception {
+        ResponseFuture<ChatResponse> lastResponse = new ResponseFuture<>();
+        StreamObserver<ChatRequest> requests = chatStub.chat(lastResponse);
+        ChatRequest request = ChatRequest.newBuilder().setUser("benchmark").setMessage("hello").build();
+        for (int i = 0; i < messagesPerStream; i++) {
+            requests.onNext(request);
+        }
+        requests.onCompleted();
+        return lastResponse.get();
+    }
+
+    /**
+     * 保存最后一条响应，在流结束时完成
+     */
+    private static class ResponseFuture<T> extends CompletableFuture<T> implements StreamObserver<T> {
+        private T last;
+
+        @Override
+        public void onNext(T value) {
+            last = value;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            complete(last);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.grpc.bistream.server;
 import com.example.grpc.bistream.ChatRequest;
 import com.example.grpc.bistream.ChatResponse;
 import com.example.grpc.bistream.ChatServiceGrpc;
+import com.example.grpc.common.ServerExecutors;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.stub.StreamObserver;
@@ -15,7 +16,7 @@ public class ChatServer {
 
     private void start() throws IOException {
         int port = 50054;
-        server = ServerBuilder.forPort(port)
+        server = ServerExecutors.configure(ServerBuilder.forPort(port))
                 .addService(new ChatServiceImpl())
                 .build()
                 .start();
@@ -50,7 +51,7 @@ public class ChatServer {
     }
 
     // 实现服务
-    static class ChatServiceImpl extends ChatServiceGrpc.ChatServiceImplBase {
+    public static class ChatServiceImpl extends ChatServiceGrpc.ChatServiceImplBase {
         @Override
         public StreamObserver<ChatRequest> chat(StreamObserver<ChatResponse> responseObserver) {
             // 返回一个 StreamObserver<ChatRequest> 来接收客户端流
@@ -3,6 +3,7 @@ package com.example.grpc.clientstream.server;
 import com.example.grpc.clientstream.AverageResponse;
 import com.example.grpc.clientstream.AverageServiceGrpc;
 import com.example.grpc.clientstream.NumberMessage;
+import com.example.grpc.common.ServerExecutors;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.stub.StreamObserver;
@@ -15,7 +16,7 @@ public class AverageServer {
 
     private void start() throws IOException {
         int port = 50053;
-        server = ServerBuilder.forPort(port)
+        server = ServerExecutors.configure(ServerBuilder.forPort(port))
                 .addService(new AverageServiceImpl())
                 .build()
                 .start();
@@ -50,7 +51,7 @@ public class AverageServer {
     }
 
     // 实现服务
-    static class AverageServiceImpl extends AverageServiceGrpc.AverageServiceImplBase {
+    public static class AverageServiceImpl extends AverageServiceGrpc.AverageServiceImplBase {
         @Override
         public StreamObserver<NumberMessage> calculateAverage(StreamObserver<AverageResponse> responseObserver) {
             // 返回一个 StreamObserver 来接收客户端流
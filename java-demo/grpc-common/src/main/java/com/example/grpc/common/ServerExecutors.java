@@ -0,0 +1,117 @@
+package com.example.grpc.common;
+
+import io.grpc.ServerBuilder;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 选择执行 gRPC 服务方法（call handler）的线程池，所有示例服务端共用。
+ *
+ * 通过系统属性 {@code grpc.server.executor} 或环境变量 {@code GRPC_SERVER_EXECUTOR} 配置:
+ * <ul>
+ *     <li>{@code default} - gRPC 默认的缓存线程池，每个阻塞中的调用占用一个平台线程</li>
+ *     <li>{@code virtual} - 每个调用一个虚拟线程（需要 Java 21+），阻塞时只挂起虚拟线程，不占用平台线程</li>
+ *     <li>{@code forkjoin} - 有界的 ForkJoinPool，并行度由 {@code grpc.server.executor.parallelism} 指定
+ *     （默认为 CPU 核数），适合不阻塞的服务方法</li>
+ *     <li>{@code direct} - 直接在传输层（Netty）线程上执行，只适用于从不阻塞的服务方法</li>
+ * </ul>
+ */
+public final class ServerExecutors {
+
+    public static final String EXECUTOR_PROPERTY = "grpc.server.executor";
+    public static final String EXECUTOR_ENV = "GRPC_SERVER_EXECUTOR";
+    public static final String PARALLELISM_PROPERTY = "grpc.server.executor.parallelism";
+
+    public enum Type {
+        DEFAULT, VIRTUAL, FORKJOIN, DIRECT
+    }
+
+    private ServerExecutors() {
+    }
+
+    /**
+     * 按配置为 builder 设置执行器。virtual 和 forkjoin 会新建执行器且不会关闭，与 gRPC 的共享线程池一样随进程存活；
+     * 在进程退出前就停止的服务端（例如基准测试）应改用 {@link #newExecutor}
+     */
+    public static <T extends ServerBuilder<?>> T configure(T builder) {
+        return configure(builder, configuredType());
+    }
+
+    public static <T extends ServerBuilder<?>> T configure(T builder, Type type) {
+        return configure(builder, type, newExecutor(type));
+    }
+
+    /**
+     * 把 {@link #newExecutor} 为 {@code type} 创建的执行器设置到 builder 上
+     */
+    public static <T extends ServerBuilder<?>> T configure(T builder, Type type, Executor executor) {
+        if (type == Type.DIRECT) {
+            builder.directExecutor();
+        } else if (executor != null) {
+            builder.executor(executor);
+        }
+        System.out.println("Call handlers run on the " + type.name().toLowerCase(Locale.ROOT) + " executor");
+        return builder;
+    }
+
+    /**
+     * 创建指定类型的执行器。default 和 direct 使用 gRPC 提供的执行器，返回 {@code null}：
+     * default 的共享线程池在服务端终止后由 gRPC 自行释放。
+     * 返回的执行器归调用方所有，服务端终止后用 {@link #shutdown} 关闭
+     */
+    public static Executor newExecutor(Type type) {
+        switch (type) {
+            case VIRTUAL:
+                return newVirtualThreadPerTaskExecutor();
+            case FORKJOIN:
+                return newForkJoinPool(Integer.getInteger(PARALLELISM_PROPERTY,
+                        Runtime.getRuntime().availableProcessors()));
+            case DIRECT:
+            case DEFAULT:
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 关闭 {@link #newExecutor} 返回的执行器，并等待正在执行的服务方法结束
+     */
+    public static void shutdown(Executor executor, long timeout, TimeUnit unit) throws InterruptedException {
+        if (executor instanceof ExecutorService) {
+            ExecutorService executorService = (ExecutorService) executor;
+            executorService.shutdown();
+            if (!executorService.awaitTermination(timeout, unit)) {
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    public static Type configuredType() {
+        String value = System.getProperty(EXECUTOR_PROPERTY, System.getenv(EXECUTOR_ENV));
+        if (value == null || value.isEmpty()) {
+            return Type.DEFAULT;
+        }
+        return Type.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public static Executor newForkJoinPool(int parallelism) {
+        return new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    /**
+     * 通过反射调用 {@code Executors.newVirtualThreadPerTaskExecutor()}，这样项目仍然可以用 Java 11 编译
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later, running on "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+}
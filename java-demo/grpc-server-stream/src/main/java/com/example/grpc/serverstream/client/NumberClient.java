@@ -25,13 +25,14 @@ public class NumberClient {
         channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
     }
 
-    public void getNumbers(int start, int end) {
-        System.out.println("Requesting numbers from " + start + " to " + end);
+    public void getNumbers(int start, int end, int ratePerSecond) {
+        System.out.println("Requesting numbers from " + start + " to " + end + " at " + ratePerSecond + "/s");
 
         // 构建请求
         NumberRequest request = NumberRequest.newBuilder()
                 .setStart(start)
                 .setEnd(end)
+                .setRatePerSecond(ratePerSecond)
                 .build();
 
         // 发送请求并接收流式响应（服务端流：一个请求，多个响应）
@@ -49,8 +50,8 @@ public class NumberClient {
     public static void main(String[] args) throws Exception {
         NumberClient client = new NumberClient("localhost", 50052);
         try {
-            // 请求数字 1 到 5
-            client.getNumbers(1, 5);
+            // 请求数字 1 到 5，每秒 2 条
+            client.getNumbers(1, 5, 2);
         } finally {
             client.shutdown();
         }
@@ -0,0 +1,77 @@
+package com.example.grpc.serverstream.loadtest;
+
+import com.example.grpc.serverstream.NumberRequest;
+import com.example.grpc.serverstream.NumberResponse;
+import com.example.grpc.serverstream.NumberServiceGrpc;
+import com.example.grpc.serverstream.server.NumberServer;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 慢速客户端负载测试：在同一个 JVM 中启动 NumberServer 服务，由一个故意很慢的客户端消费一个超长的流，
+ * 并定期打印 GC 之后的堆内存占用。服务端遵循流控时，堆内存应该保持平稳，而不是随已发送的消息数增长。
+ *
+ * 参数: [消息总数，默认 10000000] [每多少条消息暂停一次，默认 1000] [每次暂停的毫秒数，默认 1]
+ *       [服务端每秒发送速率，默认 0 即不限速]
+ */
+public class SlowClientLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int pauseEvery = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long pauseMillis = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        int ratePerSecond = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        Server server = ServerBuilder.forPort(0)
+                .addService(new NumberServer.NumberServiceImpl())
+                .build()
+                .start();
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", server.getPort())
+                .usePlaintext()
+                .build();
+
+        AtomicLong received = new AtomicLong();
+        AtomicLong maxHeapAfterGc = new AtomicLong();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> {
+            // 先 GC 再采样，只统计仍然存活的对象（例如服务端缓冲的响应）
+            System.gc();
+            long usedMb = memory.getHeapMemoryUsage().getUsed() / (1024 * 1024);
+            maxHeapAfterGc.accumulateAndGet(usedMb, Math::max);
+            System.out.println("received=" + received.get() + ", heapAfterGc=" + usedMb + "MB");
+        }, 1, 2, TimeUnit.SECONDS);
+
+        long startNanos = System.nanoTime();
+        try {
+            // 阻塞式 stub 每次只向服务端请求一条消息，客户端处理得慢，服务端就必须等待
+            Iterator<NumberResponse> responses = NumberServiceGrpc.newBlockingStub(channel)
+                    .getNumbers(NumberRequest.newBuilder().setStart(1).setEnd(total)
+                            .setRatePerSecond(ratePerSecond).build());
+            while (responses.hasNext()) {
+                responses.next();
+                if (received.incrementAndGet() % pauseEvery == 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+        } finally {
+            sampler.shutdownNow();
+            channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+            server.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        System.out.println("Received " + received.get() + " messages in " + elapsedMillis + " ms, max heap after GC: "
+                + maxHeapAfterGc.get() + "MB");
+    }
+}
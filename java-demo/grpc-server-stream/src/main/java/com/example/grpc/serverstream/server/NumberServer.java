@@ -1,13 +1,17 @@
 package com.example.grpc.serverstream.server;
 
+import com.example.grpc.common.ServerExecutors;
 import com.example.grpc.serverstream.NumberRequest;
 import com.example.grpc.serverstream.NumberResponse;
 import com.example.grpc.serverstream.NumberServiceGrpc;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class NumberServer {
@@ -15,7 +19,7 @@ public class NumberServer {
 
     private void start() throws IOException {
         int port = 50052;
-        server = ServerBuilder.forPort(port)
+        server = ServerExecutors.configure(ServerBuilder.forPort(port))
                 .addService(new NumberServiceImpl())
                 .build()
                 .start();
@@ -50,35 +54,103 @@ public class NumberServer {
     }
 
     // 实现服务
-    static class NumberServiceImpl extends NumberServiceGrpc.NumberServiceImplBase {
+    public static class NumberServiceImpl extends NumberServiceGrpc.NumberServiceImplBase {
+        // 限速模式下用于定时唤醒生产者，不会让 gRPC 工作线程 sleep
+        private final ScheduledExecutorService pacer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "number-pacer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
         @Override
         public void getNumbers(NumberRequest request, StreamObserver<NumberResponse> responseObserver) {
             int start = request.getStart();
             int end = request.getEnd();
+            int ratePerSecond = request.getRatePerSecond();
 
-            System.out.println("Received request: start=" + start + ", end=" + end);
+            System.out.println("Received request: start=" + start + ", end=" + end + ", ratePerSecond=" + ratePerSecond);
 
-            // 服务端流式 RPC：发送多个响应
-            for (int i = start; i <= end; i++) {
-                NumberResponse response = NumberResponse.newBuilder()
-                        .setNumber(i)
-                        .build();
+            // 服务端流式 RPC：按照流控（flow control）发送多个响应。
+            // 只在传输层可写（isReady）时发送，不可写时暂停，等待 onReady 回调后继续，
+            // 这样慢速客户端不会让服务端在内存中堆积未发送的响应。
+            ServerCallStreamObserver<NumberResponse> serverObserver =
+                    (ServerCallStreamObserver<NumberResponse>) responseObserver;
+            NumberProducer producer = new NumberProducer(serverObserver, start, end, ratePerSecond, pacer);
+            serverObserver.setOnCancelHandler(() -> System.out.println("Stream cancelled by client"));
+            serverObserver.setOnReadyHandler(producer);
+            // onReady 可能在处理方法返回前已经触发过，这里主动发送第一批
+            producer.run();
+        }
+    }
 
-                // 发送每个数字
-                responseObserver.onNext(response);
-                System.out.println("Sent: " + i);
+    /**
+     * 由 onReady 回调驱动的数字生产者。
+     * 限速模式使用令牌桶：令牌用完时通过 pacer 定时唤醒，而不是阻塞当前线程。
+     * onReady 回调和定时唤醒可能在不同线程上运行，因此 run() 需要加锁。
+     */
+    private static class NumberProducer implements Runnable {
+        private final ServerCallStreamObserver<NumberResponse> responseObserver;
+        private final long end;
+        private final int ratePerSecond;
+        private final double burst;
+        private final ScheduledExecutorService pacer;
+        private long next;
+        private double tokens = 1;
+        private long lastRefillNanos = System.nanoTime();
+        private boolean wakeUpScheduled;
+        private boolean completed;
 
-                // 模拟延迟
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+        NumberProducer(ServerCallStreamObserver<NumberResponse> responseObserver, int start, int end,
+                       int ratePerSecond, ScheduledExecutorService pacer) {
+            this.responseObserver = responseObserver;
+            this.next = start;
+            this.end = end;
+            this.ratePerSecond = ratePerSecond;
+            // 最多累积 10ms 的令牌，避免高速率下每条消息都要定时唤醒
+            this.burst = Math.max(1, ratePerSecond / 100.0);
+            this.pacer = pacer;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (completed || responseObserver.isCancelled()) {
+                return;
+            }
+            while (next <= end && responseObserver.isReady()) {
+                if (ratePerSecond > 0 && !takeToken()) {
+                    return;
                 }
+                responseObserver.onNext(NumberResponse.newBuilder()
+                        .setNumber((int) next++)
+                        .build());
             }
+            if (next > end) {
+                // 完成流
+                completed = true;
+                responseObserver.onCompleted();
+                System.out.println("Stream completed");
+            }
+        }
+
+        private boolean takeToken() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * ratePerSecond / 1e9);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            if (!wakeUpScheduled) {
+                wakeUpScheduled = true;
+                long waitNanos = (long) Math.ceil((1 - tokens) * 1e9 / ratePerSecond);
+                pacer.schedule(this::wakeUp, waitNanos, TimeUnit.NANOSECONDS);
+            }
+            return false;
+        }
 
-            // 完成流
-            responseObserver.onCompleted();
-            System.out.println("Stream completed");
+        private synchronized void wakeUp() {
+            wakeUpScheduled = false;
+            run();
         }
     }
 }